@@ -0,0 +1,69 @@
+/**
+ * HostPixelmatch.cpp
+ *
+ * Host JNI glue for HostPixelmatch.java. Lays ARGB ints from the Java heap
+ * out the way an Android RGBA_8888 bitmap keeps them (bytes R, G, B, A, rows
+ * padded beyond the width) and runs the same kernel as libsherlo.so on them.
+ */
+
+#include <jni.h>
+
+#include <cstdint>
+#include <vector>
+
+#include "PixelmatchKernel.h"
+
+namespace {
+
+// Padding after every row, so the check also covers strides other than width * 4
+constexpr int32_t kRowPadding = 3;
+
+static std::vector<uint32_t> toBitmapMemory(JNIEnv* env, jintArray pixels, int32_t width,
+                                            int32_t height) {
+    size_t rowWords = static_cast<size_t>(width) + kRowPadding;
+    std::vector<uint32_t> memory(rowWords * height, 0xDEADBEEFu);
+    std::vector<jint> argb(static_cast<size_t>(width) * height);
+    env->GetIntArrayRegion(pixels, 0, static_cast<jsize>(argb.size()), argb.data());
+    for (int32_t y = 0; y < height; y++) {
+        for (int32_t x = 0; x < width; x++) {
+            uint32_t pixel = static_cast<uint32_t>(argb[static_cast<size_t>(y) * width + x]);
+            memory[y * rowWords + x] =
+                    (pixel & 0xFF00FF00u) | ((pixel >> 16) & 0xFFu) | ((pixel & 0xFFu) << 16);
+        }
+    }
+    return memory;
+}
+
+} // anonymous namespace
+
+extern "C" {
+
+/**
+ * Signature must match the Java native declaration in HostPixelmatch.java:
+ *   static native int nativeCount(int[] pixels1, int[] pixels2, long[] ignoreMask, int width,
+ *           int height, long maxDelta, boolean includeAA, boolean premultiplied, int maxDiffs);
+ */
+JNIEXPORT jint JNICALL
+Java_io_sherlo_storybookreactnative_HostPixelmatch_nativeCount(
+        JNIEnv* env, jclass /*clazz*/, jintArray pixels1, jintArray pixels2,
+        jlongArray ignoreMask, jint width, jint height, jlong maxDelta,
+        jboolean includeAA, jboolean premultiplied, jint maxDiffs) {
+
+    std::vector<uint32_t> memory1 = toBitmapMemory(env, pixels1, width, height);
+    std::vector<uint32_t> memory2 = toBitmapMemory(env, pixels2, width, height);
+    std::vector<jlong> mask;
+    if (ignoreMask != nullptr) {
+        mask.resize(env->GetArrayLength(ignoreMask));
+        env->GetLongArrayRegion(ignoreMask, 0, static_cast<jsize>(mask.size()), mask.data());
+    }
+
+    size_t stride = (static_cast<size_t>(width) + kRowPadding) * sizeof(uint32_t);
+    sherlo::PixelmatchImage image1 = { reinterpret_cast<const uint8_t*>(memory1.data()), stride };
+    sherlo::PixelmatchImage image2 = { reinterpret_cast<const uint8_t*>(memory2.data()), stride };
+    return sherlo::countMismatchedPixels(
+            image1, image2, width, height,
+            ignoreMask != nullptr ? reinterpret_cast<const int64_t*>(mask.data()) : nullptr,
+            maxDelta, includeAA == JNI_TRUE, premultiplied == JNI_TRUE, maxDiffs);
+}
+
+} // extern "C"
@@ -0,0 +1,154 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.Random;
+
+/**
+ * Checks the fixed-point YIQ math of Pixelmatch against the double implementation it
+ * replaced (kept below as referenceDelta), on random pixel pairs with small and large
+ * differences, opaque and translucent, across thresholds.
+ *
+ * Rounding the coefficients to fixed point may flip a pixel only when its delta sits right
+ * at the threshold: every disagreement must be within EDGE_TOLERANCE of it, and at most
+ * MAX_DISAGREEMENT_RATE of the pairs may disagree. The sign of the luminance difference,
+ * which the anti-aliasing check relies on, may only differ for near-zero luminance deltas.
+ *
+ * Run with: gradle -p image-core checkColorDelta
+ */
+public final class ColorDeltaCheck {
+    private static final int PAIRS_PER_THRESHOLD = 200000;
+    private static final double[] THRESHOLDS = { 0, 0.005, 0.01, 0.05, 0.1, 0.2, 0.3, 0.5, 1.0 };
+    // Relative distance from the threshold within which the two implementations may disagree
+    private static final double EDGE_TOLERANCE = 1e-3;
+    private static final double MAX_DISAGREEMENT_RATE = 1e-4;
+    // Luminance deltas (0-255 scale) below which the sign may differ
+    private static final double Y_SIGN_TOLERANCE = 1e-3;
+
+    public static void main(String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        int failures = 0;
+
+        for (double threshold : THRESHOLDS) {
+            double referenceMaxDelta = 35215 * threshold * threshold;
+            long maxDelta = Pixelmatch.maxDelta(threshold);
+            int disagreements = 0;
+            int translucentDisagreements = 0;
+
+            for (int n = 0; n < PAIRS_PER_THRESHOLD; n++) {
+                boolean translucent = random.nextInt(3) == 0;
+                int pixel1 = randomPixel(random, translucent);
+                int pixel2 = n % 2 == 0 ? perturb(random, pixel1, translucent) : randomPixel(random, translucent);
+                int index = random.nextInt(4 * 1024 * 1024);
+
+                double reference = referenceDelta(pixel1, pixel2, false, index);
+                boolean referenceDiffers = Math.abs(reference) > referenceMaxDelta;
+                boolean differs = Math.abs(Pixelmatch.colorDelta(pixel1, pixel2, index)) > maxDelta;
+                if (differs != referenceDiffers) {
+                    disagreements++;
+                    if (translucent) {
+                        translucentDisagreements++;
+                    }
+                    double edge = Math.abs(Math.abs(reference) - referenceMaxDelta);
+                    if (edge > EDGE_TOLERANCE * Math.max(referenceMaxDelta, 1)) {
+                        failures++;
+                        System.err.println("threshold " + threshold + ": " + hex(pixel1) + " vs " + hex(pixel2)
+                                + " at " + index + " has reference delta " + reference + ", not at the edge "
+                                + referenceMaxDelta);
+                    }
+                }
+
+                double referenceY = referenceDelta(pixel1, pixel2, true, index);
+                long y = Pixelmatch.colorDeltaY(pixel1, pixel2, index);
+                if (Long.signum(y) != (int) Math.signum(referenceY) && Math.abs(referenceY) > Y_SIGN_TOLERANCE) {
+                    failures++;
+                    System.err.println(hex(pixel1) + " vs " + hex(pixel2) + " at " + index
+                            + ": luminance sign differs, reference " + referenceY);
+                }
+            }
+
+            double rate = (double) disagreements / PAIRS_PER_THRESHOLD;
+            System.out.println("threshold " + threshold + ": " + disagreements + " of " + PAIRS_PER_THRESHOLD
+                    + " pairs disagree (" + translucentDisagreements + " translucent)");
+            if (rate > MAX_DISAGREEMENT_RATE) {
+                failures++;
+                System.err.println("threshold " + threshold + ": disagreement rate " + rate + " exceeds "
+                        + MAX_DISAGREEMENT_RATE);
+            }
+        }
+
+        System.out.println(THRESHOLDS.length * PAIRS_PER_THRESHOLD + " pairs, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int randomPixel(Random random, boolean translucent) {
+        int alpha = translucent ? random.nextInt(256) : 255;
+        return alpha << 24 | random.nextInt(1 << 24);
+    }
+
+    // Small per-channel changes, so deltas land around the usual thresholds
+    private static int perturb(Random random, int pixel, boolean translucent) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int channel = (pixel >>> shift) & 0xFF;
+            if (shift < 24 || translucent) {
+                channel = Math.max(0, Math.min(255, channel + random.nextInt(17) - 8));
+            }
+            result |= channel << shift;
+        }
+        return result;
+    }
+
+    private static String hex(int pixel) {
+        return String.format("%08x", pixel);
+    }
+
+    // The double implementation Pixelmatch used before its YIQ math moved to fixed point,
+    // unchanged. Returns the signed perceptual delta, or the luminance delta if yOnly.
+    private static double referenceDelta(int pixel1, int pixel2, boolean yOnly, int index1) {
+        // Extract ARGB components from the 32-bit pixel values
+        int a1 = (pixel1 >>> 24) & 0xFF;
+        int r1 = (pixel1 >> 16) & 0xFF;
+        int g1 = (pixel1 >> 8) & 0xFF;
+        int b1 = pixel1 & 0xFF;
+        int a2 = (pixel2 >>> 24) & 0xFF;
+        int r2 = (pixel2 >> 16) & 0xFF;
+        int g2 = (pixel2 >> 8) & 0xFF;
+        int b2 = pixel2 & 0xFF;
+
+        if (a1 == a2 && r1 == r2 && g1 == g2 && b1 == b2) {
+            return 0.0;
+        }
+
+        // Initial color differences
+        double dr = r1 - r2;
+        double dg = g1 - g2;
+        double db = b1 - b2;
+        double da = a1 - a2;
+
+        // If either pixel is not fully opaque, blend colors over a background for comparison
+        if (a1 < 255 || a2 < 255) {
+            int k = index1 * 4;
+            double rb = 48 + 159 * (k % 2);
+            double gb = 48 + 159 * (((int) Math.floor(k / 1.618033988749895)) % 2);
+            double bb = 48 + 159 * (((int) Math.floor(k / 2.618033988749895)) % 2);
+            // Composite the two pixels onto the background
+            dr = (r1 * a1 - r2 * a2 - rb * da) / 255.0;
+            dg = (g1 * a1 - g2 * a2 - gb * da) / 255.0;
+            db = (b1 * a1 - b2 * a2 - bb * da) / 255.0;
+        }
+
+        // Compute luminance (Y) difference
+        double y = dr * 0.29889531 + dg * 0.58662247 + db * 0.11448223;
+        if (yOnly) {
+            return y;
+        }
+        // Compute chrominance (I and Q) differences
+        double i = dr * 0.59597799 - dg * 0.27417610 - db * 0.32180189;
+        double q = dr * 0.21147017 - dg * 0.52261711 + db * 0.31114694;
+        // Perceptual color difference (squared distance in YIQ space)
+        double delta = 0.5053 * y * y + 0.2990 * i * i + 0.1957 * q * q;
+        // Return signed delta (sign indicates which image is brighter, for potential diff coloring)
+        return (y > 0) ? -delta : delta;
+    }
+}
@@ -0,0 +1,22 @@
+package io.sherlo.storybookreactnative;
+
+/**
+ * Host build of the native pixelmatch kernel (libsherlo_host, see image-core/CMakeLists.txt),
+ * taking pixels from the Java heap instead of locked bitmaps.
+ */
+final class HostPixelmatch {
+    static final int UNSUPPORTED = -1;
+
+    static {
+        System.loadLibrary("sherlo_host");
+    }
+
+    /**
+     * Counts the differing pixels like NativePixelmatch.pixelmatch does for bitmaps with the
+     * given pixels.
+     */
+    static native int nativeCount(int[] pixels1, int[] pixels2, long[] ignoreMask, int width, int height,
+            long maxDelta, boolean includeAA, boolean premultiplied, int maxDiffs);
+
+    private HostPixelmatch() {}
+}
@@ -0,0 +1,152 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the native pixelmatch kernel counts exactly what Pixelmatch counts, on random
+ * frame pairs of many sizes (including widths that are not a multiple of the vector width),
+ * with translucent pixels, ignore masks, thresholds, anti-aliasing and early exits.
+ *
+ * Run with: gradle -p image-core checkNativeKernel (after building libsherlo_host).
+ */
+public final class NativeKernelCheck {
+    private static final int CASES = 4000;
+
+    public static void main(String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        int failures = 0;
+        int unsupported = 0;
+
+        for (int i = 0; i < CASES; i++) {
+            int width = 1 + random.nextInt(i % 10 == 0 ? 400 : 40);
+            int height = 1 + random.nextInt(i % 10 == 0 ? 300 : 40);
+            boolean translucent = random.nextInt(3) == 0;
+            int[] pixels1 = image(random, width, height, translucent);
+            int[] pixels2 = mutate(random, pixels1, width, height, random.nextInt(width * height / 4 + 2),
+                    translucent);
+            long[] ignoreMask = random.nextInt(4) == 0 ? randomMask(random, width, height) : null;
+            double threshold = random.nextInt(5) == 0 ? 0 : random.nextDouble() * 0.3;
+            boolean includeAA = random.nextBoolean();
+            int maxDiffs = random.nextBoolean() ? Integer.MAX_VALUE : random.nextInt(50);
+
+            int expected = Pixelmatch.pixelmatch(pixels1, null, pixels2, null, ignoreMask, width, height, threshold,
+                    includeAA, maxDiffs);
+            long maxDelta = Pixelmatch.maxDelta(threshold);
+
+            int unpremultiplied = HostPixelmatch.nativeCount(pixels1, pixels2, ignoreMask, width, height, maxDelta,
+                    includeAA, false, maxDiffs);
+            if (unpremultiplied != expected) {
+                failures++;
+                System.err.println("case " + i + " (" + width + "x" + height + "): expected " + expected
+                        + ", native " + unpremultiplied);
+            }
+
+            // Premultiplied frames may bail out, but never count differently; opaque ones never bail
+            int premultiplied = HostPixelmatch.nativeCount(pixels1, pixels2, ignoreMask, width, height, maxDelta,
+                    includeAA, true, maxDiffs);
+            if (premultiplied == HostPixelmatch.UNSUPPORTED) {
+                unsupported++;
+                if (isOpaque(pixels1) && isOpaque(pixels2)) {
+                    failures++;
+                    System.err.println("case " + i + ": opaque frames reported as unsupported");
+                }
+            } else if (premultiplied != expected) {
+                failures++;
+                System.err.println("case " + i + " (" + width + "x" + height + ", premultiplied): expected "
+                        + expected + ", native " + premultiplied);
+            }
+        }
+
+        System.out.println(CASES + " cases, " + failures + " failures, " + unsupported
+                + " premultiplied cases left to Java");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean isOpaque(int[] pixels) {
+        for (int pixel : pixels) {
+            if (pixel >>> 24 != 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Flat background with solid and gradient rectangles, so anti-aliasing checks find siblings
+    private static int[] image(Random random, int width, int height, boolean translucent) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xFF000000 | random.nextInt(0xFFFFFF));
+        int rectangles = 1 + random.nextInt(6);
+        for (int k = 0; k < rectangles; k++) {
+            int left = random.nextInt(width);
+            int top = random.nextInt(height);
+            int right = Math.min(width, left + 1 + random.nextInt(width));
+            int bottom = Math.min(height, top + 1 + random.nextInt(height));
+            int color = 0xFF000000 | random.nextInt(0xFFFFFF);
+            if (translucent && random.nextInt(3) == 0) {
+                color = random.nextInt(256) << 24 | (color & 0xFFFFFF);
+            }
+            boolean gradient = random.nextBoolean();
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    pixels[y * width + x] = gradient
+                            ? (color & 0xFF000000) | ((color >> 16) + x & 0xFF) << 16 | ((color >> 8) + y & 0xFF) << 8
+                                    | (color & 0xFF)
+                            : color;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] mutate(Random random, int[] source, int width, int height, int changes,
+            boolean translucent) {
+        int[] pixels = source.clone();
+        for (int k = 0; k < changes; k++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int color = pixels[y * width + x];
+            switch (random.nextInt(4)) {
+                case 0:
+                    color ^= 1 << random.nextInt(24);
+                    break;
+                case 1:
+                    color = 0xFF000000 | random.nextInt(0xFFFFFF);
+                    break;
+                case 2:
+                    if (translucent) {
+                        color = random.nextInt(256) << 24 | (color & 0xFFFFFF);
+                    }
+                    break;
+                default:
+                    int size = 1 + random.nextInt(8);
+                    for (int yy = y; yy < Math.min(height, y + size); yy++) {
+                        for (int xx = x; xx < Math.min(width, x + size); xx++) {
+                            pixels[yy * width + xx] = color + 0x010101 * (xx - x);
+                        }
+                    }
+            }
+            pixels[y * width + x] = color;
+        }
+        return pixels;
+    }
+
+    private static long[] randomMask(Random random, int width, int height) {
+        List<Pixelmatch.Region> regions = new ArrayList<>();
+        int count = 1 + random.nextInt(3);
+        for (int k = 0; k < count; k++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int w = 1 + random.nextInt(width);
+            int h = 1 + random.nextInt(height);
+            regions.add(new Pixelmatch.Region(x, y, w, h, w * h));
+        }
+        return Pixelmatch.createIgnoreMask(width, height, regions);
+    }
+
+    private NativeKernelCheck() {}
+}
@@ -0,0 +1,116 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.Random;
+
+/**
+ * Pairs of synthetic screenshots for the benchmarks. The first frame looks like a story
+ * screen (flat background, cards, text-like rows); the second one is derived from it
+ * according to the scenario, so every benchmark compares the same kind of change.
+ */
+final class BenchmarkFrames {
+    static final String IDENTICAL = "identical";
+    // A blinking caret / spinner: a few small spots change
+    static final String SPARSE = "sparse";
+    // A scroll by one pixel: every row with content changes
+    static final String DENSE = "dense";
+    // A translucent overlay fading in: alpha changes over a large area
+    static final String TRANSLUCENT = "translucent";
+
+    final int width;
+    final int height;
+    final int[] pixels1;
+    final int[] pixels2;
+
+    private BenchmarkFrames(int width, int height, int[] pixels1, int[] pixels2) {
+        this.width = width;
+        this.height = height;
+        this.pixels1 = pixels1;
+        this.pixels2 = pixels2;
+    }
+
+    /**
+     * Creates a pair of frames.
+     *
+     * @param resolution Size of the frames as "WIDTHxHEIGHT"
+     * @param scenario   One of the scenario constants
+     * @return The frames
+     */
+    static BenchmarkFrames create(String resolution, String scenario) {
+        int separator = resolution.indexOf('x');
+        int width = Integer.parseInt(resolution.substring(0, separator));
+        int height = Integer.parseInt(resolution.substring(separator + 1));
+        // Fixed seed so runs compare the same pixels
+        Random random = new Random(42);
+        int[] pixels1 = screen(random, width, height);
+        int[] pixels2;
+        if (IDENTICAL.equals(scenario)) {
+            pixels2 = pixels1.clone();
+        } else if (SPARSE.equals(scenario)) {
+            pixels2 = spots(random, pixels1, width, height);
+        } else if (DENSE.equals(scenario)) {
+            pixels2 = scroll(pixels1, width, height);
+        } else if (TRANSLUCENT.equals(scenario)) {
+            pixels2 = overlay(pixels1, width, height);
+        } else {
+            throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+        return new BenchmarkFrames(width, height, pixels1, pixels2);
+    }
+
+    private static int[] screen(Random random, int width, int height) {
+        int[] pixels = new int[width * height];
+        java.util.Arrays.fill(pixels, 0xFFF5F5F7);
+        int cardHeight = Math.max(8, height / 12);
+        int margin = Math.max(2, width / 24);
+        for (int top = margin; top + cardHeight < height; top += cardHeight + margin) {
+            int color = 0xFF000000 | (random.nextInt(0x404040) + 0xBFBFBF);
+            for (int y = top; y < top + cardHeight; y++) {
+                for (int x = margin; x < width - margin; x++) {
+                    pixels[y * width + x] = color;
+                }
+            }
+            // Text-like rows: short runs of dark pixels with anti-aliased edges
+            for (int y = top + 4; y < top + cardHeight - 4; y += 3) {
+                for (int x = margin * 2; x < width - margin * 2; x++) {
+                    if (random.nextInt(4) == 0) {
+                        int gray = random.nextInt(160);
+                        pixels[y * width + x] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] spots(Random random, int[] source, int width, int height) {
+        int[] pixels = source.clone();
+        int size = Math.max(4, width / 64);
+        for (int spot = 0; spot < 3; spot++) {
+            int left = random.nextInt(width - size);
+            int top = random.nextInt(height - size);
+            for (int y = top; y < top + size; y++) {
+                for (int x = left; x < left + size; x++) {
+                    pixels[y * width + x] = ~pixels[y * width + x] | 0xFF000000;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] scroll(int[] source, int width, int height) {
+        int[] pixels = new int[source.length];
+        System.arraycopy(source, width, pixels, 0, (height - 1) * width);
+        System.arraycopy(source, 0, pixels, (height - 1) * width, width);
+        return pixels;
+    }
+
+    private static int[] overlay(int[] source, int width, int height) {
+        int[] pixels = source.clone();
+        for (int y = height / 4; y < height * 3 / 4; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = 0x80000000 | (pixels[y * width + x] & 0xFFFFFF);
+            }
+        }
+        return pixels;
+    }
+}
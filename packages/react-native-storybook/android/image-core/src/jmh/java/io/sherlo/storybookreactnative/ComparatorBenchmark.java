@@ -0,0 +1,53 @@
+package io.sherlo.storybookreactnative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The comparison engines selectable with the "comparator" stability option, called the way
+ * FrameComparator calls them (row hashes precomputed, full count).
+ */
+@State(Scope.Benchmark)
+public class ComparatorBenchmark {
+    private static final double THRESHOLD = 0.1;
+
+    @Param({"1080x2400", "1440x3200", "2048x2732"})
+    public String resolution;
+
+    @Param({BenchmarkFrames.IDENTICAL, BenchmarkFrames.SPARSE, BenchmarkFrames.DENSE,
+            BenchmarkFrames.TRANSLUCENT})
+    public String scenario;
+
+    @Param({PixelmatchComparator.NAME, ExactHashComparator.NAME, SsimComparator.NAME})
+    public String engine;
+
+    private BenchmarkFrames frames;
+    private long[] rowHashes1;
+    private long[] rowHashes2;
+    private ImageComparator comparator;
+
+    @Setup
+    public void setUp() {
+        frames = BenchmarkFrames.create(resolution, scenario);
+        rowHashes1 = new long[frames.height];
+        rowHashes2 = new long[frames.height];
+        Pixelmatch.hashRows(frames.pixels1, frames.width, frames.height, rowHashes1);
+        Pixelmatch.hashRows(frames.pixels2, frames.width, frames.height, rowHashes2);
+        if (ExactHashComparator.NAME.equals(engine)) {
+            comparator = new ExactHashComparator();
+        } else if (SsimComparator.NAME.equals(engine)) {
+            comparator = new SsimComparator();
+        } else {
+            comparator = new PixelmatchComparator();
+        }
+    }
+
+    @Benchmark
+    public int compare() {
+        return comparator.compare(frames.pixels1, rowHashes1, frames.pixels2, rowHashes2, null, frames.width,
+                frames.height, THRESHOLD, false, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,68 @@
+package io.sherlo.storybookreactnative;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Pixelmatch entry points used by the stability check, at the screen sizes of the devices
+ * stories are tested on.
+ */
+@State(Scope.Benchmark)
+public class PixelmatchBenchmark {
+    private static final double THRESHOLD = 0.1;
+
+    @Param({"1080x2400", "1440x3200", "2048x2732"})
+    public String resolution;
+
+    @Param({BenchmarkFrames.IDENTICAL, BenchmarkFrames.SPARSE, BenchmarkFrames.DENSE,
+            BenchmarkFrames.TRANSLUCENT})
+    public String scenario;
+
+    private BenchmarkFrames frames;
+    private long[] rowHashes1;
+    private long[] rowHashes2;
+    private long[] scratchHashes;
+
+    @Setup
+    public void setUp() {
+        frames = BenchmarkFrames.create(resolution, scenario);
+        rowHashes1 = new long[frames.height];
+        rowHashes2 = new long[frames.height];
+        scratchHashes = new long[frames.height];
+        Pixelmatch.hashRows(frames.pixels1, frames.width, frames.height, rowHashes1);
+        Pixelmatch.hashRows(frames.pixels2, frames.width, frames.height, rowHashes2);
+    }
+
+    @Benchmark
+    public int countAll() {
+        return Pixelmatch.pixelmatch(frames.pixels1, frames.pixels2, frames.width, frames.height, THRESHOLD,
+                false);
+    }
+
+    @Benchmark
+    public boolean earlyExit() {
+        return Pixelmatch.hasDifferences(frames.pixels1, frames.pixels2, frames.width, frames.height, THRESHOLD,
+                false);
+    }
+
+    @Benchmark
+    public int countHashed() {
+        return Pixelmatch.pixelmatch(frames.pixels1, rowHashes1, frames.pixels2, rowHashes2, null, frames.width,
+                frames.height, THRESHOLD, false, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long[] hashRows() {
+        Pixelmatch.hashRows(frames.pixels2, frames.width, frames.height, scratchHashes);
+        return scratchHashes;
+    }
+
+    @Benchmark
+    public Pixelmatch.Result diffRegions() {
+        return Pixelmatch.diff(frames.pixels1, frames.pixels2, null, frames.width, frames.height, THRESHOLD, false,
+                null);
+    }
+}
@@ -0,0 +1,113 @@
+package io.sherlo.storybookreactnative;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Checks that appends reach the file at the path after the runner deleted, recreated or
+ * replaced it between two appends, instead of the old file the cached channel points to.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FileAppendHelperTest {
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() {
+        File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+        directory = new File(cacheDir, "FileAppendHelperTest");
+        directory.mkdirs();
+        file = new File(directory, "protocol.sherlo");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void appendsToRecreatedEmptyFile() throws IOException {
+        append("first\n");
+        assertTrue(file.delete());
+        assertTrue(file.createNewFile());
+
+        append("second\n");
+
+        assertEquals("second\n", read(file));
+    }
+
+    @Test
+    public void appendsToRecreatedLongerFile() throws IOException {
+        append("first\n");
+        assertTrue(file.delete());
+        write(file, "written by the runner\n");
+
+        append("second\n");
+
+        assertEquals("written by the runner\nsecond\n", read(file));
+    }
+
+    @Test
+    public void appendsToFileReplacedByRename() throws IOException {
+        append("first\n");
+        File pushed = new File(directory, "pushed.tmp");
+        write(pushed, "pushed by the runner\n");
+        assertTrue(pushed.renameTo(file));
+
+        append("second\n");
+        append("third\n");
+
+        assertEquals("pushed by the runner\nsecond\nthird\n", read(file));
+    }
+
+    private void append(String text) throws IOException {
+        FileAppendHelper.getInstance().append(file, text.getBytes("UTF-8"), true);
+    }
+
+    private static void write(File target, String text) throws IOException {
+        OutputStream out = new FileOutputStream(target);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(File source) throws IOException {
+        byte[] bytes = new byte[(int) source.length()];
+        InputStream in = new FileInputStream(source);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count = in.read(bytes, offset, bytes.length - offset);
+                if (count < 0) break;
+                offset += count;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+}
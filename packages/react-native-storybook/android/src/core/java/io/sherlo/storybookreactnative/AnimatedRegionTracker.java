@@ -0,0 +1,153 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Learns which parts of the frame never stop changing during a stability check, to tell
+ * a story that is still settling from one where only a small area animates forever
+ * (a spinner, a shimmer, a pulsing dot) that nobody masked.
+ *
+ * The frame is split into square tiles with a change counter each. A tile that changed
+ * once is assumed to be settling; from its second change on it is oscillating. Once every
+ * comparison in a row of requiredMatches has either matched or changed only oscillating
+ * tiles, and those tiles cover at most maxAreaRatio of the frame, the rest of the frame is
+ * stable and the tiles are reported as the animated regions.
+ *
+ * Not thread-safe; use one instance per stability check.
+ */
+public final class AnimatedRegionTracker {
+    public static final int TILE_SIZE = 32;
+    // Changes after which a tile counts as oscillating rather than settling
+    private static final int MIN_CHANGES = 2;
+
+    private final int requiredMatches;
+    private final double maxAreaRatio;
+
+    private int width = 0;
+    private int height = 0;
+    private int columns = 0;
+    private int rows = 0;
+    private int[] changeCounts = new int[0];
+    private boolean[] changedTiles = new boolean[0];
+    // Tiles changed since the current run of partial matches began
+    private boolean[] runTiles = new boolean[0];
+    private int runTileCount = 0;
+    private int partialMatches = 0;
+
+    /**
+     * @param requiredMatches Comparisons in a row the rest of the frame has to match
+     * @param maxAreaRatio    Largest share of the frame (0.0 to 1.0) the animated tiles may cover
+     */
+    public AnimatedRegionTracker(int requiredMatches, double maxAreaRatio) {
+        this.requiredMatches = requiredMatches;
+        this.maxAreaRatio = maxAreaRatio;
+    }
+
+    /**
+     * Returns the cleared tile buffer to mark the changes of the next comparison in (see
+     * FrameComparator.markChangedTiles). A new frame size starts the tracking over.
+     *
+     * @param frameWidth  Width of the compared frames
+     * @param frameHeight Height of the compared frames
+     * @return Row-major tiles, ceil(frameWidth / TILE_SIZE) per row
+     */
+    public boolean[] beginComparison(int frameWidth, int frameHeight) {
+        if (frameWidth != width || frameHeight != height) {
+            width = frameWidth;
+            height = frameHeight;
+            columns = (frameWidth + TILE_SIZE - 1) / TILE_SIZE;
+            rows = (frameHeight + TILE_SIZE - 1) / TILE_SIZE;
+            changeCounts = new int[columns * rows];
+            changedTiles = new boolean[columns * rows];
+            runTiles = new boolean[columns * rows];
+            resetRun();
+        }
+        Arrays.fill(changedTiles, false);
+        return changedTiles;
+    }
+
+    /**
+     * Records the outcome of a comparison, after its changed tiles were marked in the buffer
+     * from beginComparison (none for a match).
+     *
+     * @return True once the rest of the frame has matched for requiredMatches comparisons in
+     *         a row while only a bounded area of oscillating tiles kept changing
+     */
+    public boolean record() {
+        boolean isPartialMatch = true;
+        for (int tile = 0; tile < changedTiles.length; tile++) {
+            if (!changedTiles[tile]) {
+                continue;
+            }
+            changeCounts[tile]++;
+            if (changeCounts[tile] < MIN_CHANGES) {
+                isPartialMatch = false; // something new changed, the frame is still settling
+            } else if (!runTiles[tile]) {
+                runTiles[tile] = true;
+                runTileCount++;
+            }
+        }
+
+        if (!isPartialMatch || runTileCount > maxAreaRatio * changedTiles.length) {
+            resetRun();
+            return false;
+        }
+        partialMatches++;
+        return partialMatches >= requiredMatches && runTileCount > 0;
+    }
+
+    /**
+     * Starts over after something unrelated to the content changed, e.g. focus was cleared.
+     */
+    public void reset() {
+        Arrays.fill(changeCounts, 0);
+        resetRun();
+    }
+
+    /**
+     * Returns the animated area as bounding boxes of connected tiles, in frame pixels and
+     * largest first. The pixel count of a region is the area of its tiles.
+     *
+     * @return The regions, empty unless record returned true
+     */
+    public List<Pixelmatch.Region> getRegions() {
+        if (runTileCount == 0) {
+            return Collections.emptyList();
+        }
+
+        // Connected tiles are found like connected pixels, on the grid of tiles
+        DiffRegionCollector collector = new DiffRegionCollector();
+        for (int row = 0; row < rows; row++) {
+            int runStart = -1;
+            for (int column = 0; column <= columns; column++) {
+                boolean isSet = column < columns && runTiles[row * columns + column];
+                if (isSet && runStart < 0) {
+                    runStart = column;
+                } else if (!isSet && runStart >= 0) {
+                    collector.addRun(row, runStart, column - 1);
+                    runStart = -1;
+                }
+            }
+        }
+
+        List<Pixelmatch.Region> regions = new ArrayList<>();
+        for (Pixelmatch.Region tiles : collector.getRegions()) {
+            int x = tiles.x * TILE_SIZE;
+            int y = tiles.y * TILE_SIZE;
+            int regionWidth = Math.min(tiles.width * TILE_SIZE, width - x);
+            int regionHeight = Math.min(tiles.height * TILE_SIZE, height - y);
+            regions.add(new Pixelmatch.Region(x, y, regionWidth, regionHeight,
+                    tiles.pixelCount * TILE_SIZE * TILE_SIZE));
+        }
+        return regions;
+    }
+
+    private void resetRun() {
+        Arrays.fill(runTiles, false);
+        runTileCount = 0;
+        partialMatches = 0;
+    }
+}
@@ -0,0 +1,84 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes looping animations (a blinking caret, a pulsing badge) among the frames of a
+ * stability check. Comparing each frame with the one before can never settle on an
+ * A, B, A, B sequence, but the fingerprint of every frame equals the one N frames earlier.
+ *
+ * Only the fingerprints of the last MAX_PERIOD frames are kept. A period counts once the
+ * last requiredMatches frames each repeated the frame one period before them and the frames
+ * within the period are not all the same (that is a plain match, not a cycle). Fingerprints
+ * are exact, so a loop is only recognized when its frames repeat pixel for pixel at the
+ * capture interval.
+ *
+ * Not thread-safe; use one instance per stability check.
+ */
+public final class CycleDetector {
+    public static final int MAX_PERIOD = 4;
+
+    private final int requiredMatches;
+    private final long[] history = new long[MAX_PERIOD + 1];
+    // Frames in a row that repeated the frame N before them, indexed by N
+    private final int[] repeats = new int[MAX_PERIOD + 1];
+    private int frameCount = 0;
+
+    /**
+     * @param requiredMatches Frames in a row that have to repeat the cycle
+     */
+    public CycleDetector(int requiredMatches) {
+        this.requiredMatches = Math.max(requiredMatches, 1);
+    }
+
+    /**
+     * Adds the fingerprint of the latest frame.
+     *
+     * @param fingerprint The frame fingerprint (see FrameComparator.getFingerprint)
+     * @return The shortest period, in frames, the latest frames are cycling with, or 0 if none
+     */
+    public int add(long fingerprint) {
+        for (int period = 1; period <= MAX_PERIOD; period++) {
+            boolean isRepeat = frameCount >= period && getFingerprint(period) == fingerprint;
+            repeats[period] = isRepeat ? repeats[period] + 1 : 0;
+        }
+        history[frameCount % history.length] = fingerprint;
+        frameCount++;
+
+        for (int period = 2; period <= MAX_PERIOD; period++) {
+            // A period whose frames are all the same is a static frame, not a cycle
+            if (repeats[period] >= requiredMatches && repeats[1] < period - 1) {
+                return period;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the frame of the cycle a screenshot should preferably show, so a looping story
+     * is captured in the same phase on every run: the one with the smallest fingerprint.
+     *
+     * @param period The period returned by add
+     * @return The fingerprint of the canonical frame among the last period frames
+     */
+    public long getCanonicalFingerprint(int period) {
+        long canonical = Long.MAX_VALUE;
+        for (int age = 1; age <= period; age++) {
+            canonical = Math.min(canonical, getFingerprint(age));
+        }
+        return canonical;
+    }
+
+    /**
+     * Forgets all frames, e.g. after focus was cleared.
+     */
+    public void reset() {
+        Arrays.fill(repeats, 0);
+        frameCount = 0;
+    }
+
+    // Fingerprint of the frame `age` frames back, counted from the next one to be added
+    private long getFingerprint(int age) {
+        return history[(frameCount - age + history.length * 2) % history.length];
+    }
+}
@@ -0,0 +1,149 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups differing pixels into connected regions (8-connectivity) while an image is
+ * scanned row by row, so the bounding boxes come out of the same pass as the diff.
+ *
+ * Each row is fed as horizontal runs of differing pixels. A run is merged with every run
+ * of the previous row it touches, diagonals included, using union-find over run labels;
+ * only the runs of the previous row are kept, so memory grows with the number of runs,
+ * not the image size.
+ *
+ * Not thread-safe; use one instance per scan.
+ */
+public final class DiffRegionCollector {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Union-find over run labels, with the bounding box and pixel count kept at the roots
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] top = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int[] bottom = new int[INITIAL_CAPACITY];
+    private int[] pixelCount = new int[INITIAL_CAPACITY];
+    private int labelCount = 0;
+
+    // Runs of the previous and current row: start x, end x (inclusive) and label
+    private int[] previousRuns = new int[3 * INITIAL_CAPACITY];
+    private int previousRunCount = 0;
+    private int[] currentRuns = new int[3 * INITIAL_CAPACITY];
+    private int currentRunCount = 0;
+    private int currentY = -1;
+
+    /**
+     * Adds a run of differing pixels. Runs must be added row by row, top to bottom, and
+     * left to right within a row.
+     *
+     * @param y      Row of the run
+     * @param xStart First differing pixel of the run
+     * @param xEnd   Last differing pixel of the run (inclusive)
+     */
+    public void addRun(int y, int xStart, int xEnd) {
+        if (y != currentY) {
+            // Rows without runs in between break every connection to the row before them
+            boolean isAdjacent = y == currentY + 1;
+            nextRow();
+            if (!isAdjacent) {
+                previousRunCount = 0;
+            }
+            currentY = y;
+        }
+
+        int label = newLabel(y, xStart, xEnd);
+        for (int i = 0; i < previousRunCount; i++) {
+            int previousStart = previousRuns[3 * i];
+            int previousEnd = previousRuns[3 * i + 1];
+            if (previousStart > xEnd + 1) {
+                break; // runs are sorted, nothing further right can touch
+            }
+            if (previousEnd >= xStart - 1) {
+                union(label, previousRuns[3 * i + 2]);
+            }
+        }
+
+        if (3 * (currentRunCount + 1) > currentRuns.length) {
+            currentRuns = Arrays.copyOf(currentRuns, currentRuns.length * 2);
+        }
+        currentRuns[3 * currentRunCount] = xStart;
+        currentRuns[3 * currentRunCount + 1] = xEnd;
+        currentRuns[3 * currentRunCount + 2] = label;
+        currentRunCount++;
+    }
+
+    /**
+     * Returns the bounding boxes of all connected regions seen so far, largest first.
+     *
+     * @return The regions
+     */
+    public List<Pixelmatch.Region> getRegions() {
+        List<Pixelmatch.Region> regions = new ArrayList<>();
+        for (int label = 0; label < labelCount; label++) {
+            if (parent[label] == label) {
+                regions.add(new Pixelmatch.Region(left[label], top[label], right[label] - left[label] + 1,
+                        bottom[label] - top[label] + 1, pixelCount[label]));
+            }
+        }
+        Collections.sort(regions, (a, b) -> Integer.compare(b.pixelCount, a.pixelCount));
+        return regions;
+    }
+
+    private void nextRow() {
+        int[] runs = previousRuns;
+        previousRuns = currentRuns;
+        previousRunCount = currentRunCount;
+        currentRuns = runs;
+        currentRunCount = 0;
+    }
+
+    private int newLabel(int y, int xStart, int xEnd) {
+        if (labelCount == parent.length) {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            left = Arrays.copyOf(left, capacity);
+            top = Arrays.copyOf(top, capacity);
+            right = Arrays.copyOf(right, capacity);
+            bottom = Arrays.copyOf(bottom, capacity);
+            pixelCount = Arrays.copyOf(pixelCount, capacity);
+        }
+
+        int label = labelCount++;
+        parent[label] = label;
+        left[label] = xStart;
+        top[label] = y;
+        right[label] = xEnd;
+        bottom[label] = y;
+        pixelCount[label] = xEnd - xStart + 1;
+        return label;
+    }
+
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]]; // path halving
+            label = parent[label];
+        }
+        return label;
+    }
+
+    private void union(int label1, int label2) {
+        int root1 = find(label1);
+        int root2 = find(label2);
+        if (root1 == root2) {
+            return;
+        }
+
+        // Keep the older label as the root; it is the one the previous row refers to
+        int root = Math.min(root1, root2);
+        int merged = Math.max(root1, root2);
+        parent[merged] = root;
+        left[root] = Math.min(left[root], left[merged]);
+        top[root] = Math.min(top[root], top[merged]);
+        right[root] = Math.max(right[root], right[merged]);
+        bottom[root] = Math.max(bottom[root], bottom[merged]);
+        pixelCount[root] += pixelCount[merged];
+    }
+}
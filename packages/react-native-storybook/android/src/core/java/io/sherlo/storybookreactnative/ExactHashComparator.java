@@ -0,0 +1,48 @@
+package io.sherlo.storybookreactnative;
+
+/**
+ * Cheapest engine, for stories where any change at all should keep the check going: a row
+ * differs when its hash differs, and every pixel of a differing row counts. Comparing two
+ * frames reads one hash per row and no pixels. Threshold and includeAA are ignored.
+ */
+public final class ExactHashComparator implements ImageComparator {
+    public static final String NAME = "exact";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.ROW_HASHES;
+    }
+
+    @Override
+    public int compare(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2, long[] ignoreMask,
+            int width, int height, double threshold, boolean includeAA, int maxDiffs) {
+        int diffCount = 0;
+        for (int y = 0; y < height; y++) {
+            boolean isChanged = rowHashes1 != null && rowHashes2 != null
+                    ? rowHashes1[y] != rowHashes2[y]
+                    : isRowChanged(pixels1, pixels2, ignoreMask, y * width, y * width + width);
+            if (isChanged) {
+                diffCount += width;
+                if (diffCount > maxDiffs) {
+                    return maxDiffs + 1;
+                }
+            }
+        }
+        return diffCount;
+    }
+
+    // Without hashes, e.g. on the full-resolution pass, rows are compared pixel by pixel
+    private static boolean isRowChanged(int[] pixels1, int[] pixels2, long[] ignoreMask, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if (pixels1[index] != pixels2[index] && !Pixelmatch.isIgnored(ignoreMask, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package io.sherlo.storybookreactnative;
+
+/**
+ * Engine that decides how much two frames differ, used by FrameComparator for the
+ * consecutive-match counting of a stability check. Engines trade speed for sensitivity
+ * differently (see Cost), so stories can pick the one that suits them.
+ *
+ * Implementations must be stateless or thread-safe. FrameComparator calls them on the
+ * compare thread of CaptureExecutor ("SherloFrameCompare"), one comparison at a time,
+ * while the next frame is captured on the stability worker; an instance may still be
+ * shared with other callers. FrameComparator.release(), which hands the kept frames back
+ * to the pool, runs from the check's finish() on the compare thread after its last
+ * comparison, not on the worker that set the first frame.
+ */
+public interface ImageComparator {
+    /** What a comparison costs, from cheapest to most expensive per changed row. */
+    enum Cost {
+        // Reads only the row hashes computed while decoding; never touches pixels
+        ROW_HASHES,
+        // Reads the pixels of changed rows; YIQ math for every differing pixel
+        CHANGED_PIXELS,
+        // Reads every window around a changed pixel; means and variances for each of them
+        CHANGED_WINDOWS
+    }
+
+    /**
+     * Returns the name the engine is selected by (stability option "comparator").
+     *
+     * @return The name
+     */
+    String getName();
+
+    /**
+     * Returns what a comparison costs with this engine.
+     *
+     * @return The cost class
+     */
+    Cost getCost();
+
+    /**
+     * Compares two equally sized images, with the same arguments as the hashed
+     * Pixelmatch.pixelmatch. Engines may ignore the arguments that mean nothing to them
+     * (e.g. includeAA), but must count nothing inside the ignore mask and return 0 for
+     * equal images.
+     *
+     * @param pixels1    First image pixels, row by row
+     * @param rowHashes1 Row hashes of the first image, or null
+     * @param pixels2    Second image pixels, row by row
+     * @param rowHashes2 Row hashes of the second image, or null
+     * @param ignoreMask Pixels to leave out of the comparison, or null
+     * @param width      Width of both images
+     * @param height     Height of both images
+     * @param threshold  Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA  If false, ignore anti-aliased pixels when counting differences
+     * @param maxDiffs   Number of differing pixels after which counting stops
+     * @return The number of differing pixels if it is at most maxDiffs, maxDiffs + 1 otherwise
+     */
+    int compare(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2, long[] ignoreMask, int width,
+            int height, double threshold, boolean includeAA, int maxDiffs);
+}
@@ -0,0 +1,770 @@
+package io.sherlo.storybookreactnative;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Based on https://github.com/mapbox/pixelmatch v7.1.0
+ * Created based on the ISC license. Copyright (c) 2025, Mapbox.
+ */
+public class Pixelmatch {
+    // Below this size the scan is faster than handing bands to other threads
+    private static final int PARALLEL_MIN_PIXELS = 256 * 1024;
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService pool = null;
+
+    private static final long ROW_HASH_SEED = 0xCBF29CE484222325L;
+    private static final long ROW_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    // YIQ math runs in fixed point: channel differences are scaled by 255 (exact for blended
+    // translucent pixels too) and the coefficients by COEFFICIENT_ONE. Before squaring, the
+    // components drop REDUCE_SHIFT bits of that precision so the weighted squares fit in a long.
+    private static final long COEFFICIENT_ONE = 1 << 16;
+    private static final int REDUCE_SHIFT = 12;
+    private static final long WEIGHT_ONE = 1 << 16;
+    // A delta of 1.0 in the double formulation, in colorDelta units
+    private static final double DELTA_SCALE =
+            Math.pow(255.0 * COEFFICIENT_ONE / (1 << REDUCE_SHIFT), 2) * WEIGHT_ONE;
+
+    private static final long Y_R = fixed(0.29889531), Y_G = fixed(0.58662247), Y_B = fixed(0.11448223);
+    private static final long I_R = fixed(0.59597799), I_G = -fixed(0.27417610), I_B = -fixed(0.32180189);
+    private static final long Q_R = fixed(0.21147017), Q_G = -fixed(0.52261711), Q_B = fixed(0.31114694);
+    private static final long W_Y = Math.round(0.5053 * WEIGHT_ONE);
+    private static final long W_I = Math.round(0.2990 * WEIGHT_ONE);
+    private static final long W_Q = Math.round(0.1957 * WEIGHT_ONE);
+
+    private static final int BACKGROUND_LOW = 48;
+    private static final int BACKGROUND_HIGH = 48 + 159;
+
+    private static volatile long[][] blendPattern = { new long[0], new long[0] };
+
+    // Colors of the diff output, as in upstream pixelmatch
+    private static final int DIFF_COLOR = 0xFFFF0000;
+    private static final int AA_COLOR = 0xFFFFFF00;
+    private static final double GRAY_ALPHA = 0.1;
+
+    private static long fixed(double coefficient) {
+        return Math.round(coefficient * COEFFICIENT_ONE);
+    }
+
+    /** Bounding box of a connected group of differing pixels. */
+    public static final class Region {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+        public final int pixelCount;
+
+        public Region(int x, int y, int width, int height, int pixelCount) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.pixelCount = pixelCount;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + x + "," + y + " (" + pixelCount + " px)";
+        }
+    }
+
+    /** Result of a full diff: the mismatched pixel count and where those pixels are. */
+    public static final class Result {
+        public final int diffCount;
+        public final List<Region> regions;
+
+        public Result(int diffCount, List<Region> regions) {
+            this.diffCount = diffCount;
+            this.regions = regions;
+        }
+    }
+
+    /**
+     * Compare two equally sized images, given as ARGB pixel arrays, and return the number of
+     * mismatched pixels. Does not allocate, so callers comparing frame after frame can reuse
+     * their buffers (see FrameComparator).
+     *
+     * @param pixels1   First image pixels, row by row (as returned by Bitmap.getPixels on Android).
+     * @param pixels2   Second image pixels, row by row.
+     * @param width     Width of both images.
+     * @param height    Height of both images.
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences.
+     * @return The number of pixels that differ beyond the threshold.
+     */
+    public static int pixelmatch(int[] pixels1, int[] pixels2, int width, int height, double threshold,
+            boolean includeAA) {
+        return pixelmatch(pixels1, pixels2, width, height, threshold, includeAA, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns whether two equally sized images have any pixel that differs beyond the threshold.
+     * Stops at the first such pixel, so frames that are still changing are rejected right away.
+     *
+     * @param pixels1   First image pixels, row by row.
+     * @param pixels2   Second image pixels, row by row.
+     * @param width     Width of both images.
+     * @param height    Height of both images.
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA If false, ignore anti-aliased pixels.
+     * @return True if at least one pixel differs beyond the threshold.
+     */
+    public static boolean hasDifferences(int[] pixels1, int[] pixels2, int width, int height, double threshold,
+            boolean includeAA) {
+        return pixelmatch(pixels1, pixels2, width, height, threshold, includeAA, 0) > 0;
+    }
+
+    /**
+     * Compare two equally sized images, stopping as soon as more than maxDiffs mismatched
+     * pixels were found. Callers that only need to know whether the images are within a
+     * budget don't pay for a full scan (and its anti-aliasing analysis) of images that are
+     * clearly different. Large images are scanned in parallel bands on a shared pool; the
+     * result is the same as a serial scan. If the calling thread is interrupted while the
+     * bands run, the images count as over budget and the interrupt is kept set.
+     *
+     * @param pixels1   First image pixels, row by row.
+     * @param pixels2   Second image pixels, row by row.
+     * @param width     Width of both images.
+     * @param height    Height of both images.
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences.
+     * @param maxDiffs  Number of mismatched pixels after which counting stops.
+     * @return The number of mismatched pixels if it is at most maxDiffs, maxDiffs + 1 otherwise.
+     */
+    public static int pixelmatch(int[] pixels1, int[] pixels2, int width, int height, double threshold,
+            boolean includeAA, int maxDiffs) {
+        return pixelmatch(pixels1, null, pixels2, null, null, width, height, threshold, includeAA, maxDiffs);
+    }
+
+    /**
+     * Compare two equally sized images with precomputed row hashes (see hashRows).
+     * Rows whose hashes are equal are skipped without looking at their pixels, so the cost
+     * scales with the number of changed rows rather than the screen size. Callers keeping
+     * the hashes with their frames hash each frame once, however often it is compared.
+     * Pixels set in the ignore mask (see createIgnoreMask) never count as mismatched; the
+     * row hashes must have been computed with the same mask.
+     *
+     * @param pixels1     First image pixels, row by row.
+     * @param rowHashes1  Row hashes of the first image, or null to compare every row.
+     * @param pixels2     Second image pixels, row by row.
+     * @param rowHashes2  Row hashes of the second image, or null to compare every row.
+     * @param ignoreMask  Pixels to leave out of the comparison, or null to compare all.
+     * @param width       Width of both images.
+     * @param height      Height of both images.
+     * @param threshold   Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA   If false, ignore anti-aliased pixels when counting differences.
+     * @param maxDiffs    Number of mismatched pixels after which counting stops.
+     * @return The number of mismatched pixels if it is at most maxDiffs, maxDiffs + 1 otherwise.
+     */
+    public static int pixelmatch(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2,
+            long[] ignoreMask, int width, int height, double threshold, boolean includeAA, int maxDiffs) {
+        int totalPixels = width * height;
+        long[] hashes1 = rowHashes2 != null ? rowHashes1 : null;
+        long[] hashes2 = rowHashes1 != null ? rowHashes2 : null;
+
+        // Quick check for identical images
+        boolean identical = true;
+        if (hashes1 != null) {
+            for (int y = 0; y < height; y++) {
+                if (hashes1[y] != hashes2[y]) {
+                    identical = false;
+                    break;
+                }
+            }
+        } else {
+            for (int i = 0; i < totalPixels; i++) {
+                if (pixels1[i] != pixels2[i]) {
+                    identical = false;
+                    break;
+                }
+            }
+        }
+        if (identical) {
+            return 0;
+        }
+
+        long maxDelta = maxDelta(threshold);
+        AtomicInteger diffCount = new AtomicInteger(0);
+
+        int bandCount = totalPixels >= PARALLEL_MIN_PIXELS ? Math.min(PARALLELISM, height) : 1;
+        if (bandCount > 1) {
+            try {
+                countBandsInParallel(pixels1, hashes1, pixels2, hashes2, ignoreMask, width, height, maxDelta,
+                        includeAA, maxDiffs, diffCount, bandCount);
+                return Math.min(diffCount.get(), safeIncrement(maxDiffs));
+            } catch (InterruptedException e) {
+                // Bands still running keep adding to diffCount, and the caller asked to stop:
+                // report the images as over budget rather than scanning them again
+                Thread.currentThread().interrupt();
+                return safeIncrement(maxDiffs);
+            }
+        }
+
+        countRows(pixels1, hashes1, pixels2, hashes2, ignoreMask, width, height, 0, height, maxDelta, includeAA,
+                maxDiffs, diffCount);
+        return Math.min(diffCount.get(), safeIncrement(maxDiffs));
+    }
+
+    /**
+     * Computes a 64-bit hash of every row of an image. Equal rows always have equal hashes;
+     * different rows collide with negligible probability, which is what lets pixelmatch
+     * skip rows with equal hashes.
+     *
+     * @param pixels    Image pixels, row by row.
+     * @param width     Width of the image.
+     * @param height    Height of the image.
+     * @param rowHashes Array of at least height elements to store the hashes in.
+     */
+    public static void hashRows(int[] pixels, int width, int height, long[] rowHashes) {
+        hashRows(pixels, null, width, height, rowHashes);
+    }
+
+    /**
+     * Computes row hashes like hashRows, treating every pixel set in the ignore mask as 0,
+     * so rows that only differ in ignored pixels hash the same.
+     *
+     * @param pixels     Image pixels, row by row.
+     * @param ignoreMask Pixels to leave out of the hashes, or null to hash all of them.
+     * @param width      Width of the image.
+     * @param height     Height of the image.
+     * @param rowHashes  Array of at least height elements to store the hashes in.
+     */
+    public static void hashRows(int[] pixels, long[] ignoreMask, int width, int height, long[] rowHashes) {
+        if (ignoreMask != null) {
+            hashMaskedRows(pixels, ignoreMask, width, height, rowHashes);
+            return;
+        }
+
+        for (int y = 0; y < height; y++) {
+            // Two pixels per step and two independent lanes, so the multiplies don't wait on each other
+            long lane1 = ROW_HASH_SEED;
+            long lane2 = ROW_HASH_SEED ^ ROW_HASH_MULTIPLIER;
+            int i = y * width;
+            int end = i + width;
+            for (; i + 3 < end; i += 4) {
+                lane1 = (lane1 ^ (((long) pixels[i] << 32) | (pixels[i + 1] & 0xFFFFFFFFL))) * ROW_HASH_MULTIPLIER;
+                lane2 = (lane2 ^ (((long) pixels[i + 2] << 32) | (pixels[i + 3] & 0xFFFFFFFFL))) * ROW_HASH_MULTIPLIER;
+                lane1 ^= lane1 >>> 29;
+                lane2 ^= lane2 >>> 29;
+            }
+            for (; i < end; i++) {
+                lane1 = (lane1 ^ (pixels[i] & 0xFFFFFFFFL)) * ROW_HASH_MULTIPLIER;
+                lane1 ^= lane1 >>> 29;
+            }
+            rowHashes[y] = (lane1 * ROW_HASH_MULTIPLIER) ^ lane2;
+        }
+    }
+
+    /**
+     * Combines row hashes into a hash of the whole image, e.g. to recognize a frame seen
+     * before without keeping its pixels.
+     *
+     * @param rowHashes Row hashes of the image (see hashRows).
+     * @param height    Height of the image.
+     * @return The image hash.
+     */
+    public static long hashImage(long[] rowHashes, int height) {
+        long hash = ROW_HASH_SEED ^ height;
+        for (int y = 0; y < height; y++) {
+            hash = (hash ^ rowHashes[y]) * ROW_HASH_MULTIPLIER;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    private static void hashMaskedRows(int[] pixels, long[] ignoreMask, int width, int height, long[] rowHashes) {
+        for (int y = 0; y < height; y++) {
+            long lane1 = ROW_HASH_SEED;
+            long lane2 = ROW_HASH_SEED ^ ROW_HASH_MULTIPLIER;
+            int i = y * width;
+            int end = i + width;
+            for (; i + 3 < end; i += 4) {
+                lane1 = (lane1 ^ (((long) unmasked(pixels, ignoreMask, i) << 32)
+                        | (unmasked(pixels, ignoreMask, i + 1) & 0xFFFFFFFFL))) * ROW_HASH_MULTIPLIER;
+                lane2 = (lane2 ^ (((long) unmasked(pixels, ignoreMask, i + 2) << 32)
+                        | (unmasked(pixels, ignoreMask, i + 3) & 0xFFFFFFFFL))) * ROW_HASH_MULTIPLIER;
+                lane1 ^= lane1 >>> 29;
+                lane2 ^= lane2 >>> 29;
+            }
+            for (; i < end; i++) {
+                lane1 = (lane1 ^ (unmasked(pixels, ignoreMask, i) & 0xFFFFFFFFL)) * ROW_HASH_MULTIPLIER;
+                lane1 ^= lane1 >>> 29;
+            }
+            rowHashes[y] = (lane1 * ROW_HASH_MULTIPLIER) ^ lane2;
+        }
+    }
+
+    // The pixel at index, or 0 if it is ignored; branch-free for the hash loop
+    private static int unmasked(int[] pixels, long[] ignoreMask, int index) {
+        int isIgnored = (int) (ignoreMask[index >>> 6] >>> index) & 1;
+        return pixels[index] & (isIgnored - 1);
+    }
+
+    static boolean isIgnored(long[] ignoreMask, int index) {
+        return ignoreMask != null && (ignoreMask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Builds a bit mask with one bit per pixel, set for every pixel inside one of the
+     * regions. Regions are clipped to the image.
+     *
+     * @param width   Width of the image.
+     * @param height  Height of the image.
+     * @param regions Areas to ignore, in image pixels.
+     * @return The mask, or null if no region overlaps the image.
+     */
+    public static long[] createIgnoreMask(int width, int height, List<Region> regions) {
+        long[] mask = null;
+        for (Region region : regions) {
+            int x0 = Math.max(region.x, 0);
+            int y0 = Math.max(region.y, 0);
+            int x1 = Math.min(region.x + region.width, width);
+            int y1 = Math.min(region.y + region.height, height);
+            if (x0 >= x1 || y0 >= y1) {
+                continue;
+            }
+
+            if (mask == null) {
+                mask = new long[(int) (((long) width * height + 63) >>> 6)];
+            }
+            for (int y = y0; y < y1; y++) {
+                for (int index = y * width + x0, end = y * width + x1; index < end; index++) {
+                    mask[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Compare two equally sized images like pixelmatch, additionally drawing the upstream
+     * diff image and grouping the mismatched pixels into connected regions in the same
+     * pass. Always scans the whole image on the calling thread, so it is meant for
+     * diagnostics (e.g. the last frames of a failed stabilization), not the hot loop.
+     *
+     * The output shows mismatched pixels in red, ignored anti-aliased pixels in yellow and
+     * everything else (ignored pixels included) as a faded grayscale copy of the first image.
+     *
+     * @param pixels1    First image pixels, row by row.
+     * @param pixels2    Second image pixels, row by row.
+     * @param ignoreMask Pixels to leave out of the comparison, or null to compare all.
+     * @param width     Width of both images.
+     * @param height    Height of both images.
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences.
+     * @param output    Array of width * height ARGB pixels to draw the diff into, or null.
+     * @return The number of mismatched pixels and the bounding boxes of their regions.
+     */
+    public static Result diff(int[] pixels1, int[] pixels2, long[] ignoreMask, int width, int height,
+            double threshold, boolean includeAA, int[] output) {
+        long maxDelta = maxDelta(threshold);
+        DiffRegionCollector regions = new DiffRegionCollector();
+        int diffCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            int runStart = -1;
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                boolean counted = false;
+                int color = 0;
+
+                if (pixels1[index] != pixels2[index] && !isIgnored(ignoreMask, index)) {
+                    long delta = colorDelta(pixels1[index], pixels2[index], index);
+                    if (Math.abs(delta) > maxDelta) {
+                        if (!includeAA && (isAntiAliased(pixels1, x, y, width, height, pixels2) ||
+                                isAntiAliased(pixels2, x, y, width, height, pixels1))) {
+                            color = AA_COLOR;
+                        } else {
+                            color = DIFF_COLOR;
+                            counted = true;
+                        }
+                    }
+                }
+
+                if (output != null) {
+                    output[index] = color != 0 ? color : grayPixel(pixels1[index]);
+                }
+
+                if (counted) {
+                    diffCount++;
+                    if (runStart < 0) {
+                        runStart = x;
+                    }
+                } else if (runStart >= 0) {
+                    regions.addRun(y, runStart, x - 1);
+                    runStart = -1;
+                }
+            }
+            if (runStart >= 0) {
+                regions.addRun(y, runStart, width - 1);
+            }
+        }
+
+        return new Result(diffCount, regions.getRegions());
+    }
+
+    /**
+     * Marks the square tiles of the image that contain at least one pixel differing beyond
+     * the threshold, with the same rules as pixelmatch. Rows with equal hashes are skipped
+     * and so is the rest of a tile's row once the tile is marked, so a small change costs
+     * little more than the early-exit comparison that found it.
+     *
+     * @param rowHashes1   Row hashes of pixels1 (see hashRows), or null to scan every row
+     * @param rowHashes2   Row hashes of pixels2, or null
+     * @param ignoreMask   Pixels to skip (see createIgnoreMask), or null
+     * @param tileSize     Side of a tile in pixels
+     * @param changedTiles Row-major tiles of the image, ceil(width / tileSize) per row; set to
+     *                     true for every changed tile, others are left untouched
+     * @return The number of tiles newly marked
+     */
+    public static int markChangedTiles(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2,
+            long[] ignoreMask, int width, int height, double threshold, boolean includeAA, int tileSize,
+            boolean[] changedTiles) {
+        long maxDelta = maxDelta(threshold);
+        int columns = (width + tileSize - 1) / tileSize;
+        int marked = 0;
+
+        for (int y = 0; y < height; y++) {
+            if (rowHashes1 != null && rowHashes1[y] == rowHashes2[y]) {
+                continue; // row unchanged
+            }
+
+            int tileRow = (y / tileSize) * columns;
+            for (int x = 0; x < width; x++) {
+                int tile = tileRow + x / tileSize;
+                if (changedTiles[tile]) {
+                    x = (x / tileSize + 1) * tileSize - 1; // already marked, jump to the next tile
+                    continue;
+                }
+
+                int index = y * width + x;
+                if (pixels1[index] == pixels2[index] || isIgnored(ignoreMask, index)) {
+                    continue;
+                }
+                long delta = colorDelta(pixels1[index], pixels2[index], index);
+                if (Math.abs(delta) > maxDelta && (includeAA
+                        || !(isAntiAliased(pixels1, x, y, width, height, pixels2)
+                                || isAntiAliased(pixels2, x, y, width, height, pixels1)))) {
+                    changedTiles[tile] = true;
+                    marked++;
+                }
+            }
+        }
+        return marked;
+    }
+
+    // Faded grayscale version of a pixel for the unchanged parts of the diff output
+    private static int grayPixel(int pixel) {
+        int a = pixel >>> 24;
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        double luminance = r * 0.29889531 + g * 0.58662247 + b * 0.11448223;
+        int value = (int) Math.round(255 + (luminance - 255) * GRAY_ALPHA * a / 255);
+        return 0xFF000000 | (value << 16) | (value << 8) | value;
+    }
+
+    /**
+     * Splits the image into horizontal bands and counts them on the shared pool.
+     * Bands only write their own counts; the anti-aliasing check reads the rows around a
+     * band (its halo) straight from the shared, read-only pixel arrays, so the result is
+     * the same as a serial scan.
+     */
+    private static void countBandsInParallel(final int[] pixels1, final long[] rowHashes1, final int[] pixels2,
+            final long[] rowHashes2, final long[] ignoreMask, final int width, final int height, final long maxDelta,
+            final boolean includeAA, final int maxDiffs, final AtomicInteger diffCount, int bandCount)
+            throws InterruptedException {
+        List<Callable<Void>> bands = new ArrayList<>(bandCount);
+        for (int band = 0; band < bandCount; band++) {
+            final int yStart = (int) ((long) height * band / bandCount);
+            final int yEnd = (int) ((long) height * (band + 1) / bandCount);
+            bands.add(() -> {
+                countRows(pixels1, rowHashes1, pixels2, rowHashes2, ignoreMask, width, height, yStart, yEnd, maxDelta,
+                        includeAA, maxDiffs, diffCount);
+                return null;
+            });
+        }
+
+        for (Future<Void> future : getPool().invokeAll(bands)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Pixelmatch band failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Counts the mismatched pixels in rows [yStart, yEnd) into diffCount, stopping once the
+     * shared count exceeds maxDiffs. Rows with equal hashes are skipped: all their pixels
+     * outside the ignore mask are equal, and the anti-aliasing check only runs for
+     * differing pixels.
+     */
+    private static void countRows(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2,
+            long[] ignoreMask, int width, int height, int yStart, int yEnd, long maxDelta, boolean includeAA,
+            int maxDiffs, AtomicInteger diffCount) {
+        // Traverse each pixel to find differences
+        for (int y = yStart; y < yEnd; y++) {
+            if (diffCount.get() > maxDiffs) {
+                return; // over budget (possibly by another band), the exact count is not needed
+            }
+            if (rowHashes1 != null && rowHashes1[y] == rowHashes2[y]) {
+                continue; // row unchanged
+            }
+
+            int rowDiffs = 0;
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                if (pixels1[index] == pixels2[index]) {
+                    continue; // pixels are exactly the same
+                }
+                if (isIgnored(ignoreMask, index)) {
+                    continue; // inside an ignored region
+                }
+                // Compute color difference in YIQ color space
+                long delta = colorDelta(pixels1[index], pixels2[index], index);
+                if (Math.abs(delta) > maxDelta) {
+                    // Difference exceeds threshold – count it unless it's anti-aliased
+                    boolean counted = true;
+                    if (!includeAA) {
+                        if (isAntiAliased(pixels1, x, y, width, height, pixels2) ||
+                            isAntiAliased(pixels2, x, y, width, height, pixels1)) {
+                            counted = false; // skip this pixel if it's anti-aliasing
+                        }
+                    }
+                    if (counted && diffCount.get() + ++rowDiffs > maxDiffs) {
+                        break;
+                    }
+                }
+            }
+
+            if (rowDiffs > 0) {
+                diffCount.addAndGet(rowDiffs);
+            }
+        }
+    }
+
+    /**
+     * Returns the largest colorDelta magnitude that still counts as a match for the given
+     * threshold. Shared with the native kernel, so both compare against the same integer.
+     *
+     * @param threshold Matching threshold (0.0 to 1.0).
+     * @return The maximum delta in DELTA_SCALE units.
+     */
+    static long maxDelta(double threshold) {
+        return (long) Math.floor(35215 * threshold * threshold * DELTA_SCALE);
+    }
+
+    private static int safeIncrement(int value) {
+        return value == Integer.MAX_VALUE ? value : value + 1;
+    }
+
+    /**
+     * Returns the pool shared by all parallel comparisons, created on first use.
+     * Daemon threads, so an idle pool never keeps the process alive.
+     */
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+                Thread thread = new Thread(runnable, "SherloPixelmatch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    // Calculate the color difference between two pixels (in ARGB format) using YIQ color space, in fixed point.
+    // Returns the perceptual delta in DELTA_SCALE units, signed: negative when the first pixel is brighter.
+    // index1 is the pixel index of the first image (used for consistent background blending with transparency).
+    // Package-private for ColorDeltaCheck, which validates it against the double formulation.
+    static long colorDelta(int pixel1, int pixel2, int index1) {
+        if (pixel1 == pixel2) {
+            return 0;
+        }
+
+        long y = colorDeltaY(pixel1, pixel2, index1);
+        long i = blendedDelta(pixel1, pixel2, index1, I_R, I_G, I_B);
+        long q = blendedDelta(pixel1, pixel2, index1, Q_R, Q_G, Q_B);
+
+        // Perceptual color difference (squared distance in YIQ space), after dropping the
+        // extra coefficient precision so the squares fit in a long
+        long ys = y >> REDUCE_SHIFT;
+        long is = i >> REDUCE_SHIFT;
+        long qs = q >> REDUCE_SHIFT;
+        long delta = W_Y * ys * ys + W_I * is * is + W_Q * qs * qs;
+        // Return signed delta (sign indicates which image is brighter, for potential diff coloring)
+        return (y > 0) ? -delta : delta;
+    }
+
+    // Luminance (Y) difference of two pixels, in 255 * COEFFICIENT_ONE units. Only its sign and
+    // ordering are used, so no conversion back to the double scale is needed.
+    static long colorDeltaY(int pixel1, int pixel2, int index1) {
+        if (pixel1 == pixel2) {
+            return 0;
+        }
+        return blendedDelta(pixel1, pixel2, index1, Y_R, Y_G, Y_B);
+    }
+
+    // One YIQ component of the difference of two pixels. Works on channel differences scaled by
+    // 255 so that blending translucent pixels over the background (r1 * a1 - r2 * a2 - rb * da)
+    // stays exact integer math; opaque pixels take the short path with the same scale.
+    private static long blendedDelta(int pixel1, int pixel2, int index1, long cr, long cg, long cb) {
+        int a1 = pixel1 >>> 24;
+        int a2 = pixel2 >>> 24;
+        int r1 = (pixel1 >> 16) & 0xFF;
+        int g1 = (pixel1 >> 8) & 0xFF;
+        int b1 = pixel1 & 0xFF;
+        int r2 = (pixel2 >> 16) & 0xFF;
+        int g2 = (pixel2 >> 8) & 0xFF;
+        int b2 = pixel2 & 0xFF;
+
+        int dr, dg, db;
+        if ((a1 & a2) == 255) {
+            dr = (r1 - r2) * 255;
+            dg = (g1 - g2) * 255;
+            db = (b1 - b2) * 255;
+        } else {
+            // If either pixel is not fully opaque, blend colors over a background for comparison
+            int da = a1 - a2;
+            int pattern = blendPattern(index1);
+            dr = r1 * a1 - r2 * a2 - BACKGROUND_LOW * da; // k = index * 4 is even, so red is always low
+            dg = g1 * a1 - g2 * a2 - ((pattern & 1) != 0 ? BACKGROUND_HIGH : BACKGROUND_LOW) * da;
+            db = b1 * a1 - b2 * a2 - ((pattern & 2) != 0 ? BACKGROUND_HIGH : BACKGROUND_LOW) * da;
+        }
+        return dr * cr + dg * cg + db * cb;
+    }
+
+    // Background pattern bits for a pixel: bit 0 selects the high green background,
+    // bit 1 the high blue one. Looked up in bit sets grown on demand, so the golden-ratio
+    // divisions run once per pixel index instead of on every comparison.
+    private static int blendPattern(int index) {
+        long[][] pattern = blendPattern;
+        if (index >= pattern[0].length * 64) {
+            pattern = growBlendPattern(index);
+        }
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        return ((pattern[0][word] & bit) != 0 ? 1 : 0) | ((pattern[1][word] & bit) != 0 ? 2 : 0);
+    }
+
+    private static synchronized long[][] growBlendPattern(int index) {
+        long[][] current = blendPattern;
+        if (index < current[0].length * 64) {
+            return current;
+        }
+
+        int words = Math.max(current[0].length * 2, (index >>> 6) + 1);
+        long[] green = new long[words];
+        long[] blue = new long[words];
+        for (int i = 0; i < words * 64; i++) {
+            // Same double math as the reference implementation, so the pattern matches exactly
+            long k = (long) i * 4;
+            if (((long) Math.floor(k / 1.618033988749895)) % 2 != 0) {
+                green[i >>> 6] |= 1L << (i & 63);
+            }
+            if (((long) Math.floor(k / 2.618033988749895)) % 2 != 0) {
+                blue[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+
+        blendPattern = new long[][] { green, blue };
+        return blendPattern;
+    }
+
+    // Determine if the pixel at (x, y) in the main image is part of an anti-aliased edge.
+    // Uses the main image's neighbors and the other image for comparison.
+    private static boolean isAntiAliased(int[] mainPixels, int x, int y, int width, int height, int[] otherPixels) {
+        int index = y * width + x;
+        int centerPixel = mainPixels[index];
+
+        // Define the neighbor bounds (3x3 region centered on (x, y))
+        int x0 = (x > 0) ? x - 1 : x;
+        int y0 = (y > 0) ? y - 1 : y;
+        int x2 = (x < width - 1) ? x + 1 : x;
+        int y2 = (y < height - 1) ? y + 1 : y;
+
+        int identicalCount = 0;
+        if (x == x0 || x == x2 || y == y0 || y == y2) {
+            // On the border of the image, treat one missing neighbor as identical
+            identicalCount = 1;
+        }
+
+        long minY = 0, maxY = 0;
+        int minX = x, minYIdx = y;
+        int maxX = x, maxYIdx = y;
+
+        // Examine neighboring pixels in the main image
+        for (int ny = y0; ny <= y2; ny++) {
+            for (int nx = x0; nx <= x2; nx++) {
+                if (nx == x && ny == y) continue;
+                int neighborIndex = ny * width + nx;
+                // Compute luminance difference between center pixel and neighbor
+                long yDelta = colorDeltaY(centerPixel, mainPixels[neighborIndex], index);
+                if (yDelta == 0) {
+                    // Neighbor color matches exactly
+                    if (++identicalCount > 2) {
+                        return false; // more than two identical neighbors -> not an anti-aliased pixel
+                    }
+                } else if (yDelta < minY) {
+                    minY = yDelta;
+                    minX = nx;
+                    minYIdx = ny;
+                } else if (yDelta > maxY) {
+                    maxY = yDelta;
+                    maxX = nx;
+                    maxYIdx = ny;
+                }
+            }
+        }
+
+        if (minY == 0 || maxY == 0) {
+            // Pixel has no range of color variation among neighbors
+            return false;
+        }
+
+        // Check if the most similar and most different neighbor pixels are part of uniform areas in both images
+        if (hasManySiblings(mainPixels, minX, minYIdx, width, height) &&
+            hasManySiblings(otherPixels, minX, minYIdx, width, height)) {
+            return true;
+        }
+        if (hasManySiblings(mainPixels, maxX, maxYIdx, width, height) &&
+            hasManySiblings(otherPixels, maxX, maxYIdx, width, height)) {
+            return true;
+        }
+        return false;
+    }
+
+    // Helper to determine if a given pixel in the image has more than two neighbors of the same color.
+    private static boolean hasManySiblings(int[] pixels, int x, int y, int width, int height) {
+        int center = pixels[y * width + x];
+        int x0 = (x > 0) ? x - 1 : x;
+        int y0 = (y > 0) ? y - 1 : y;
+        int x2 = (x < width - 1) ? x + 1 : x;
+        int y2 = (y < height - 1) ? y + 1 : y;
+
+        int count = 0;
+        if (x == x0 || x == x2 || y == y0 || y == y2) {
+            count = 1;
+        }
+        for (int ny = y0; ny <= y2; ny++) {
+            for (int nx = x0; nx <= x2; nx++) {
+                if (nx == x && ny == y) continue;
+                if (pixels[ny * width + nx] == center) {
+                    if (++count > 2) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package io.sherlo.storybookreactnative;
+
+/**
+ * The default engine: YIQ color distance per pixel with anti-aliasing detection, as in
+ * upstream pixelmatch (see Pixelmatch).
+ */
+public final class PixelmatchComparator implements ImageComparator {
+    public static final String NAME = "pixelmatch";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.CHANGED_PIXELS;
+    }
+
+    @Override
+    public int compare(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2, long[] ignoreMask,
+            int width, int height, double threshold, boolean includeAA, int maxDiffs) {
+        return Pixelmatch.pixelmatch(pixels1, rowHashes1, pixels2, rowHashes2, ignoreMask, width, height, threshold,
+                includeAA, maxDiffs);
+    }
+}
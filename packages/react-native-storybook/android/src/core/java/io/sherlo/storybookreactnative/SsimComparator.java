@@ -0,0 +1,118 @@
+package io.sherlo.storybookreactnative;
+
+/**
+ * Perceptual engine: structural similarity (SSIM) of the luminance in 8x8 windows. Noise,
+ * dithering and sub-pixel text rendering barely move a window's means and variances, while
+ * anything a person would notice does. Every pixel of a window whose SSIM is below
+ * 1 - threshold counts as differing, so threshold 0 counts any window that changed at all.
+ * includeAA is ignored.
+ *
+ * Windows in which no pixel changed are skipped without computing anything, and rows with
+ * equal hashes are not read, so the cost grows with the changed area only.
+ */
+public final class SsimComparator implements ImageComparator {
+    public static final String NAME = "ssim";
+
+    private static final int WINDOW_SIZE = 8;
+    // Stabilizing constants of the SSIM paper, for 8-bit luminance
+    private static final double C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.CHANGED_WINDOWS;
+    }
+
+    @Override
+    public int compare(int[] pixels1, long[] rowHashes1, int[] pixels2, long[] rowHashes2, long[] ignoreMask,
+            int width, int height, double threshold, boolean includeAA, int maxDiffs) {
+        double minSsim = 1 - threshold;
+        int diffCount = 0;
+
+        for (int windowY = 0; windowY < height; windowY += WINDOW_SIZE) {
+            int windowHeight = Math.min(WINDOW_SIZE, height - windowY);
+            if (rowHashes1 != null && rowHashes2 != null
+                    && areRowsEqual(rowHashes1, rowHashes2, windowY, windowHeight)) {
+                continue; // no window in these rows changed
+            }
+
+            for (int windowX = 0; windowX < width; windowX += WINDOW_SIZE) {
+                int windowWidth = Math.min(WINDOW_SIZE, width - windowX);
+                double ssim = windowSsim(pixels1, pixels2, ignoreMask, width, windowX, windowY, windowWidth,
+                        windowHeight);
+                if (ssim < minSsim) {
+                    diffCount += windowWidth * windowHeight;
+                    if (diffCount > maxDiffs) {
+                        return maxDiffs + 1;
+                    }
+                }
+            }
+        }
+        return diffCount;
+    }
+
+    private static boolean areRowsEqual(long[] rowHashes1, long[] rowHashes2, int y, int rows) {
+        for (int end = y + rows; y < end; y++) {
+            if (rowHashes1[y] != rowHashes2[y]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * SSIM of one window, 1 if no pixel in it changed. Ignored pixels take the first
+     * image's value in both images, so they can't lower the similarity.
+     */
+    private static double windowSsim(int[] pixels1, int[] pixels2, long[] ignoreMask, int width, int windowX,
+            int windowY, int windowWidth, int windowHeight) {
+        boolean isChanged = false;
+        double sum1 = 0, sum2 = 0, sumSquares1 = 0, sumSquares2 = 0, sumProducts = 0;
+
+        for (int y = windowY; y < windowY + windowHeight; y++) {
+            for (int index = y * width + windowX, end = index + windowWidth; index < end; index++) {
+                int pixel1 = pixels1[index];
+                int pixel2 = pixels2[index];
+                if (pixel1 != pixel2 && Pixelmatch.isIgnored(ignoreMask, index)) {
+                    pixel2 = pixel1;
+                }
+                isChanged |= pixel1 != pixel2;
+
+                double luminance1 = luminance(pixel1);
+                double luminance2 = luminance(pixel2);
+                sum1 += luminance1;
+                sum2 += luminance2;
+                sumSquares1 += luminance1 * luminance1;
+                sumSquares2 += luminance2 * luminance2;
+                sumProducts += luminance1 * luminance2;
+            }
+        }
+        if (!isChanged) {
+            return 1;
+        }
+
+        int count = windowWidth * windowHeight;
+        double mean1 = sum1 / count;
+        double mean2 = sum2 / count;
+        double variance1 = sumSquares1 / count - mean1 * mean1;
+        double variance2 = sumSquares2 / count - mean2 * mean2;
+        double covariance = sumProducts / count - mean1 * mean2;
+        return ((2 * mean1 * mean2 + C1) * (2 * covariance + C2))
+                / ((mean1 * mean1 + mean2 * mean2 + C1) * (variance1 + variance2 + C2));
+    }
+
+    // Luminance of the pixel blended onto white, as the translucent pixel would appear
+    private static double luminance(int pixel) {
+        int a = pixel >>> 24;
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        double luminance = r * 0.29889531 + g * 0.58662247 + b * 0.11448223;
+        return 255 + (luminance - 255) * a / 255;
+    }
+}
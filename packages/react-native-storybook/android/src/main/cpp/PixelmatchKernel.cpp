@@ -0,0 +1,420 @@
+/**
+ * PixelmatchKernel.cpp
+ *
+ * See PixelmatchKernel.h. The structure follows Pixelmatch.countRows():
+ *
+ *   1. Identical runs are skipped four pixels at a time (NEON / SSE2), comparing
+ *      the raw memory words. Equal memory means equal Java pixels whatever the
+ *      alpha, so no conversion is needed to skip.
+ *   2. For a block with a difference, the Y, I and Q components of all four
+ *      pixel pairs are computed at once (NEON / SSE4.1) in 32-bit lanes; only
+ *      the weighted squares, which need 64 bits, are summed per pixel.
+ *   3. Translucent pixels and the anti-aliasing check take the scalar path,
+ *      which mirrors the Java code line by line.
+ *
+ * ── Why the math stays in 32-bit lanes ───────────────────────────────────────
+ * Java computes a component as ((r1 - r2) * 255 * cR + ...) >> 12 in 64 bits.
+ * With s = (r1 - r2) * cR + ... (at most ~2^25 in magnitude) and
+ * s = 4096 * q + r, 0 <= r < 4096:
+ *
+ *   (255 * s) >> 12 == 255 * q + ((255 * r) >> 12)
+ *
+ * and every term on the right fits in 32 bits. The result is the same integer.
+ * ─────────────────────────────────────────────────────────────────────────────
+ */
+
+#include "PixelmatchKernel.h"
+
+#include <cmath>
+#include <cstring>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#define SHERLO_NEON 1
+#elif defined(__SSE4_1__)
+#include <smmintrin.h>
+#define SHERLO_SSE2 1
+#define SHERLO_SSE41 1
+#elif defined(__SSE2__)
+#include <emmintrin.h>
+#define SHERLO_SSE2 1
+#endif
+
+// Memory words are read as little-endian uint32 (A << 24 | B << 16 | G << 8 | R),
+// which every Android ABI and the x86_64 host are.
+static_assert(sizeof(uint32_t) == 4, "RGBA_8888 pixels are 4 bytes");
+
+namespace sherlo {
+namespace {
+
+// Fixed-point YIQ coefficients, Math.round(coefficient * 65536) as in Pixelmatch.java
+constexpr int32_t kYR = 19588, kYG = 38445, kYB = 7503;
+constexpr int32_t kIR = 39058, kIG = -17968, kIB = -21090;
+constexpr int32_t kQR = 13859, kQG = -34250, kQB = 20391;
+constexpr int64_t kWY = 33115, kWI = 19595, kWQ = 12825;
+constexpr int kReduceShift = 12;
+
+constexpr int32_t kBackgroundLow = 48;
+constexpr int32_t kBackgroundHigh = 48 + 159;
+
+// Memory word (RGBA bytes) to the ARGB int Java works with
+inline uint32_t toArgb(uint32_t word) {
+    return (word & 0xFF00FF00u) | ((word & 0xFFu) << 16) | ((word >> 16) & 0xFFu);
+}
+
+inline int64_t weightedSquares(int64_t ys, int64_t is, int64_t qs) {
+    return kWY * ys * ys + kWI * is * is + kWQ * qs * qs;
+}
+
+// (255 * s) >> kReduceShift without leaving 32 bits, see the file comment
+inline int32_t reduce(int32_t s) {
+    return 255 * (s >> kReduceShift) + (((s & ((1 << kReduceShift) - 1)) * 255) >> kReduceShift);
+}
+
+class Kernel {
+public:
+    Kernel(const PixelmatchImage& image1, const PixelmatchImage& image2, int32_t width,
+           int32_t height, const int64_t* ignoreMask, bool premultiplied)
+        : image1_(image1), image2_(image2), width_(width), height_(height),
+          ignoreMask_(ignoreMask), premultiplied_(premultiplied) {}
+
+    int32_t count(int64_t maxDelta, bool includeAA, int32_t maxDiffs);
+
+private:
+    const uint32_t* row(const PixelmatchImage& image, int32_t y) const {
+        return reinterpret_cast<const uint32_t*>(image.pixels + static_cast<size_t>(y) * image.stride);
+    }
+
+    uint32_t pixel(const PixelmatchImage& image, int32_t x, int32_t y) const {
+        return toArgb(row(image, y)[x]);
+    }
+
+    bool isIgnored(int64_t index) const {
+        return ignoreMask_ != nullptr && (ignoreMask_[index >> 6] & (int64_t(1) << (index & 63))) != 0;
+    }
+
+    // Java only sees premultiplied pixels after unpremultiplying them; only opaque ones are safe
+    bool isComparable(uint32_t argb) const {
+        return !premultiplied_ || (argb >> 24) == 255;
+    }
+
+    static int32_t firstDifference(const uint32_t* row1, const uint32_t* row2, int32_t x, int32_t end);
+    static void components(const uint32_t* row1, const uint32_t* row2, int32_t* ys, int32_t* is,
+                           int32_t* qs);
+
+    int64_t colorDelta(uint32_t pixel1, uint32_t pixel2, int64_t index1) const;
+    static int64_t blendedDelta(uint32_t pixel1, uint32_t pixel2, int64_t index1, int64_t cr,
+                                int64_t cg, int64_t cb);
+    bool isAntiAliased(const PixelmatchImage& main, int32_t x, int32_t y,
+                       const PixelmatchImage& other);
+    bool hasManySiblings(const PixelmatchImage& image, int32_t x, int32_t y);
+
+    const PixelmatchImage& image1_;
+    const PixelmatchImage& image2_;
+    const int32_t width_;
+    const int32_t height_;
+    const int64_t* ignoreMask_;
+    const bool premultiplied_;
+    bool unsupported_ = false;
+};
+
+int32_t Kernel::count(int64_t maxDelta, bool includeAA, int32_t maxDiffs) {
+    int64_t diffCount = 0;
+    int32_t ys[4], is[4], qs[4];
+
+    for (int32_t y = 0; y < height_; y++) {
+        const uint32_t* row1 = row(image1_, y);
+        const uint32_t* row2 = row(image2_, y);
+
+        for (int32_t x = 0;; x += 4) {
+            x = firstDifference(row1, row2, x, width_);
+            if (x >= width_) {
+                break; // rest of the row unchanged
+            }
+
+            int32_t lanes = width_ - x < 4 ? width_ - x : 4;
+            if (lanes == 4) {
+                components(row1 + x, row2 + x, ys, is, qs);
+            }
+
+            for (int32_t lane = 0; lane < lanes; lane++) {
+                uint32_t word1 = row1[x + lane];
+                uint32_t word2 = row2[x + lane];
+                if (word1 == word2) {
+                    continue; // pixels are exactly the same
+                }
+                int64_t index = static_cast<int64_t>(y) * width_ + x + lane;
+                if (isIgnored(index)) {
+                    continue; // inside an ignored region
+                }
+
+                uint32_t pixel1 = toArgb(word1);
+                uint32_t pixel2 = toArgb(word2);
+                int64_t delta;
+                if ((pixel1 & pixel2) >> 24 == 255 && lanes == 4) {
+                    delta = weightedSquares(ys[lane], is[lane], qs[lane]);
+                } else {
+                    if (!isComparable(pixel1) || !isComparable(pixel2)) {
+                        return kPixelmatchUnsupported;
+                    }
+                    delta = colorDelta(pixel1, pixel2, index);
+                }
+
+                if (delta > maxDelta) {
+                    if (!includeAA) {
+                        bool antiAliased = isAntiAliased(image1_, x + lane, y, image2_) ||
+                                           isAntiAliased(image2_, x + lane, y, image1_);
+                        if (unsupported_) {
+                            return kPixelmatchUnsupported;
+                        }
+                        if (antiAliased) {
+                            continue;
+                        }
+                    }
+                    if (++diffCount > maxDiffs) {
+                        return maxDiffs + 1; // over budget, the exact count is not needed
+                    }
+                }
+            }
+        }
+    }
+    return static_cast<int32_t>(diffCount);
+}
+
+// Index of the first pixel in [x, end) whose memory differs, or end
+int32_t Kernel::firstDifference(const uint32_t* row1, const uint32_t* row2, int32_t x, int32_t end) {
+#if defined(SHERLO_NEON)
+    for (; x + 4 <= end; x += 4) {
+        uint32x4_t equal = vceqq_u32(vld1q_u32(row1 + x), vld1q_u32(row2 + x));
+        uint32x2_t halves = vand_u32(vget_low_u32(equal), vget_high_u32(equal));
+        if ((vget_lane_u32(halves, 0) & vget_lane_u32(halves, 1)) != 0xFFFFFFFFu) {
+            break;
+        }
+    }
+#elif defined(SHERLO_SSE2)
+    for (; x + 4 <= end; x += 4) {
+        __m128i a = _mm_loadu_si128(reinterpret_cast<const __m128i*>(row1 + x));
+        __m128i b = _mm_loadu_si128(reinterpret_cast<const __m128i*>(row2 + x));
+        if (_mm_movemask_epi8(_mm_cmpeq_epi32(a, b)) != 0xFFFF) {
+            break;
+        }
+    }
+#endif
+    while (x < end && row1[x] == row2[x]) {
+        x++;
+    }
+    return x;
+}
+
+// Y, I and Q differences of four opaque pixel pairs, each already reduced by kReduceShift.
+// Lanes with translucent pixels hold meaningless values; the caller does not use them.
+void Kernel::components(const uint32_t* row1, const uint32_t* row2, int32_t* ys, int32_t* is,
+                        int32_t* qs) {
+#if defined(SHERLO_NEON)
+    uint32x4_t a = vld1q_u32(row1);
+    uint32x4_t b = vld1q_u32(row2);
+    uint32x4_t channel = vdupq_n_u32(0xFF);
+    int32x4_t dr = vsubq_s32(vreinterpretq_s32_u32(vandq_u32(a, channel)),
+                             vreinterpretq_s32_u32(vandq_u32(b, channel)));
+    int32x4_t dg = vsubq_s32(vreinterpretq_s32_u32(vandq_u32(vshrq_n_u32(a, 8), channel)),
+                             vreinterpretq_s32_u32(vandq_u32(vshrq_n_u32(b, 8), channel)));
+    int32x4_t db = vsubq_s32(vreinterpretq_s32_u32(vandq_u32(vshrq_n_u32(a, 16), channel)),
+                             vreinterpretq_s32_u32(vandq_u32(vshrq_n_u32(b, 16), channel)));
+
+    int32x4_t low = vdupq_n_s32((1 << kReduceShift) - 1);
+    int32x4_t scale = vdupq_n_s32(255);
+    auto reduce4 = [&](int32x4_t s) {
+        int32x4_t high = vmulq_s32(vshrq_n_s32(s, kReduceShift), scale);
+        int32x4_t rest = vshrq_n_s32(vmulq_s32(vandq_s32(s, low), scale), kReduceShift);
+        return vaddq_s32(high, rest);
+    };
+    auto component = [&](int32_t cr, int32_t cg, int32_t cb) {
+        int32x4_t s = vmulq_n_s32(dr, cr);
+        s = vmlaq_n_s32(s, dg, cg);
+        s = vmlaq_n_s32(s, db, cb);
+        return reduce4(s);
+    };
+    vst1q_s32(ys, component(kYR, kYG, kYB));
+    vst1q_s32(is, component(kIR, kIG, kIB));
+    vst1q_s32(qs, component(kQR, kQG, kQB));
+#elif defined(SHERLO_SSE41)
+    __m128i a = _mm_loadu_si128(reinterpret_cast<const __m128i*>(row1));
+    __m128i b = _mm_loadu_si128(reinterpret_cast<const __m128i*>(row2));
+    __m128i channel = _mm_set1_epi32(0xFF);
+    __m128i dr = _mm_sub_epi32(_mm_and_si128(a, channel), _mm_and_si128(b, channel));
+    __m128i dg = _mm_sub_epi32(_mm_and_si128(_mm_srli_epi32(a, 8), channel),
+                               _mm_and_si128(_mm_srli_epi32(b, 8), channel));
+    __m128i db = _mm_sub_epi32(_mm_and_si128(_mm_srli_epi32(a, 16), channel),
+                               _mm_and_si128(_mm_srli_epi32(b, 16), channel));
+
+    __m128i low = _mm_set1_epi32((1 << kReduceShift) - 1);
+    __m128i scale = _mm_set1_epi32(255);
+    auto component = [&](int32_t cr, int32_t cg, int32_t cb) {
+        __m128i s = _mm_add_epi32(
+            _mm_add_epi32(_mm_mullo_epi32(dr, _mm_set1_epi32(cr)), _mm_mullo_epi32(dg, _mm_set1_epi32(cg))),
+            _mm_mullo_epi32(db, _mm_set1_epi32(cb)));
+        __m128i high = _mm_mullo_epi32(_mm_srai_epi32(s, kReduceShift), scale);
+        __m128i rest = _mm_srai_epi32(_mm_mullo_epi32(_mm_and_si128(s, low), scale), kReduceShift);
+        return _mm_add_epi32(high, rest);
+    };
+    _mm_storeu_si128(reinterpret_cast<__m128i*>(ys), component(kYR, kYG, kYB));
+    _mm_storeu_si128(reinterpret_cast<__m128i*>(is), component(kIR, kIG, kIB));
+    _mm_storeu_si128(reinterpret_cast<__m128i*>(qs), component(kQR, kQG, kQB));
+#else
+    for (int lane = 0; lane < 4; lane++) {
+        int32_t dr = int32_t(row1[lane] & 0xFF) - int32_t(row2[lane] & 0xFF);
+        int32_t dg = int32_t((row1[lane] >> 8) & 0xFF) - int32_t((row2[lane] >> 8) & 0xFF);
+        int32_t db = int32_t((row1[lane] >> 16) & 0xFF) - int32_t((row2[lane] >> 16) & 0xFF);
+        ys[lane] = reduce(dr * kYR + dg * kYG + db * kYB);
+        is[lane] = reduce(dr * kIR + dg * kIG + db * kIB);
+        qs[lane] = reduce(dr * kQR + dg * kQG + db * kQB);
+    }
+#endif
+}
+
+// Pixelmatch.colorDelta, as a magnitude (the sign is never needed for counting)
+int64_t Kernel::colorDelta(uint32_t pixel1, uint32_t pixel2, int64_t index1) const {
+    if (pixel1 == pixel2) {
+        return 0;
+    }
+    int64_t ys = blendedDelta(pixel1, pixel2, index1, kYR, kYG, kYB) >> kReduceShift;
+    int64_t is = blendedDelta(pixel1, pixel2, index1, kIR, kIG, kIB) >> kReduceShift;
+    int64_t qs = blendedDelta(pixel1, pixel2, index1, kQR, kQG, kQB) >> kReduceShift;
+    return weightedSquares(ys, is, qs);
+}
+
+// Pixelmatch.blendedDelta
+int64_t Kernel::blendedDelta(uint32_t pixel1, uint32_t pixel2, int64_t index1, int64_t cr,
+                             int64_t cg, int64_t cb) {
+    int32_t a1 = pixel1 >> 24;
+    int32_t a2 = pixel2 >> 24;
+    int32_t r1 = (pixel1 >> 16) & 0xFF;
+    int32_t g1 = (pixel1 >> 8) & 0xFF;
+    int32_t b1 = pixel1 & 0xFF;
+    int32_t r2 = (pixel2 >> 16) & 0xFF;
+    int32_t g2 = (pixel2 >> 8) & 0xFF;
+    int32_t b2 = pixel2 & 0xFF;
+
+    int32_t dr, dg, db;
+    if ((a1 & a2) == 255) {
+        dr = (r1 - r2) * 255;
+        dg = (g1 - g2) * 255;
+        db = (b1 - b2) * 255;
+    } else {
+        // Same double math as Pixelmatch.growBlendPattern, so the backgrounds match exactly
+        int32_t da = a1 - a2;
+        int64_t k = index1 * 4;
+        bool highGreen = static_cast<int64_t>(std::floor(static_cast<double>(k) / 1.618033988749895)) % 2 != 0;
+        bool highBlue = static_cast<int64_t>(std::floor(static_cast<double>(k) / 2.618033988749895)) % 2 != 0;
+        dr = r1 * a1 - r2 * a2 - kBackgroundLow * da;
+        dg = g1 * a1 - g2 * a2 - (highGreen ? kBackgroundHigh : kBackgroundLow) * da;
+        db = b1 * a1 - b2 * a2 - (highBlue ? kBackgroundHigh : kBackgroundLow) * da;
+    }
+    return dr * cr + dg * cg + db * cb;
+}
+
+// Pixelmatch.isAntiAliased; sets unsupported_ if it needs a translucent premultiplied pixel
+bool Kernel::isAntiAliased(const PixelmatchImage& main, int32_t x, int32_t y,
+                           const PixelmatchImage& other) {
+    int64_t index = static_cast<int64_t>(y) * width_ + x;
+    uint32_t center = pixel(main, x, y);
+
+    int32_t x0 = x > 0 ? x - 1 : x;
+    int32_t y0 = y > 0 ? y - 1 : y;
+    int32_t x2 = x < width_ - 1 ? x + 1 : x;
+    int32_t y2 = y < height_ - 1 ? y + 1 : y;
+
+    int32_t identicalCount = 0;
+    if (x == x0 || x == x2 || y == y0 || y == y2) {
+        identicalCount = 1;
+    }
+
+    int64_t minY = 0, maxY = 0;
+    int32_t minX = x, minYIdx = y;
+    int32_t maxX = x, maxYIdx = y;
+
+    for (int32_t ny = y0; ny <= y2; ny++) {
+        for (int32_t nx = x0; nx <= x2; nx++) {
+            if (nx == x && ny == y) continue;
+            uint32_t neighbor = pixel(main, nx, ny);
+            int64_t yDelta = 0;
+            if (neighbor != center) {
+                if (!isComparable(neighbor)) {
+                    unsupported_ = true;
+                    return false;
+                }
+                yDelta = blendedDelta(center, neighbor, index, kYR, kYG, kYB);
+            }
+            if (yDelta == 0) {
+                if (++identicalCount > 2) {
+                    return false;
+                }
+            } else if (yDelta < minY) {
+                minY = yDelta;
+                minX = nx;
+                minYIdx = ny;
+            } else if (yDelta > maxY) {
+                maxY = yDelta;
+                maxX = nx;
+                maxYIdx = ny;
+            }
+        }
+    }
+
+    if (minY == 0 || maxY == 0) {
+        return false;
+    }
+
+    if (hasManySiblings(main, minX, minYIdx) && hasManySiblings(other, minX, minYIdx)) {
+        return !unsupported_;
+    }
+    if (hasManySiblings(main, maxX, maxYIdx) && hasManySiblings(other, maxX, maxYIdx)) {
+        return !unsupported_;
+    }
+    return false;
+}
+
+// Pixelmatch.hasManySiblings. Equality of memory words is equality of Java pixels as long
+// as the center is opaque, so only a translucent premultiplied center is unsupported.
+bool Kernel::hasManySiblings(const PixelmatchImage& image, int32_t x, int32_t y) {
+    uint32_t center = pixel(image, x, y);
+    if (!isComparable(center)) {
+        unsupported_ = true;
+        return false;
+    }
+    int32_t x0 = x > 0 ? x - 1 : x;
+    int32_t y0 = y > 0 ? y - 1 : y;
+    int32_t x2 = x < width_ - 1 ? x + 1 : x;
+    int32_t y2 = y < height_ - 1 ? y + 1 : y;
+
+    int32_t count = 0;
+    if (x == x0 || x == x2 || y == y0 || y == y2) {
+        count = 1;
+    }
+    for (int32_t ny = y0; ny <= y2; ny++) {
+        for (int32_t nx = x0; nx <= x2; nx++) {
+            if (nx == x && ny == y) continue;
+            if (pixel(image, nx, ny) == center) {
+                if (++count > 2) {
+                    return true;
+                }
+            }
+        }
+    }
+    return false;
+}
+
+} // anonymous namespace
+
+int32_t countMismatchedPixels(const PixelmatchImage& image1, const PixelmatchImage& image2,
+                              int32_t width, int32_t height, const int64_t* ignoreMask,
+                              int64_t maxDelta, bool includeAA, bool premultiplied,
+                              int32_t maxDiffs) {
+    if (image1.pixels == nullptr || image2.pixels == nullptr || width <= 0 || height <= 0) {
+        return kPixelmatchUnsupported;
+    }
+    Kernel kernel(image1, image2, width, height, ignoreMask, premultiplied);
+    return kernel.count(maxDelta, includeAA, maxDiffs);
+}
+
+} // namespace sherlo
@@ -0,0 +1,59 @@
+/**
+ * PixelmatchKernel.h
+ *
+ * Native counterpart of the counting loop in Pixelmatch.java, working directly
+ * on bitmap memory (RGBA_8888: bytes R, G, B, A per pixel, rows `stride` bytes
+ * apart) instead of on ARGB ints copied out with Bitmap.getPixels().
+ *
+ * The result is bit-exact with Pixelmatch.pixelmatch(pixels1, null, pixels2,
+ * null, ignoreMask, width, height, threshold, includeAA, maxDiffs): the YIQ
+ * math uses the same fixed-point constants and the same integer steps, and
+ * maxDelta is computed by Pixelmatch.maxDelta() on the Java side.
+ *
+ * No JNI or Android dependencies, so the same code is built into libsherlo.so
+ * and into the host library used to check it against the Java implementation
+ * (see android/image-core).
+ */
+
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+
+namespace sherlo {
+
+// Returned when the kernel cannot guarantee the Java result; callers fall back to Java.
+constexpr int32_t kPixelmatchUnsupported = -1;
+
+struct PixelmatchImage {
+    const uint8_t* pixels;
+    size_t stride;
+};
+
+/**
+ * Counts the pixels in which two equally sized RGBA_8888 images differ beyond
+ * maxDelta, stopping once more than maxDiffs were found.
+ *
+ * Premultiplied images can only be compared where they are opaque: Java sees
+ * unpremultiplied colors, and how the platform unpremultiplies is not
+ * specified. The kernel returns kPixelmatchUnsupported as soon as a
+ * translucent pixel would take part in the math.
+ *
+ * @param image1        First image
+ * @param image2        Second image
+ * @param width         Width of both images
+ * @param height        Height of both images
+ * @param ignoreMask    One bit per pixel (see Pixelmatch.createIgnoreMask), or nullptr
+ * @param maxDelta      Largest delta that still matches (Pixelmatch.maxDelta)
+ * @param includeAA     If false, anti-aliased pixels are not counted
+ * @param premultiplied Whether the colors of the images are premultiplied by alpha
+ * @param maxDiffs      Number of differing pixels after which counting stops
+ * @return The number of differing pixels if it is at most maxDiffs, maxDiffs + 1
+ *         otherwise, or kPixelmatchUnsupported
+ */
+int32_t countMismatchedPixels(const PixelmatchImage& image1, const PixelmatchImage& image2,
+                              int32_t width, int32_t height, const int64_t* ignoreMask,
+                              int64_t maxDelta, bool includeAA, bool premultiplied,
+                              int32_t maxDiffs);
+
+} // namespace sherlo
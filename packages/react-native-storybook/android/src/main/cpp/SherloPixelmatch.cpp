@@ -0,0 +1,92 @@
+/**
+ * SherloPixelmatch.cpp
+ *
+ * JNI glue for NativePixelmatch.java: locks the pixels of two bitmaps and runs
+ * the pixelmatch kernel (PixelmatchKernel.cpp) on their memory, so the frames
+ * never have to be copied to the Java heap with Bitmap.getPixels().
+ *
+ * Safety contract:
+ *   - Only RGBA_8888 bitmaps of the same size are compared; anything else
+ *     (hardware bitmaps, RGB_565, ...) returns kPixelmatchUnsupported.
+ *   - Pixels are unlocked and the ignore mask released on every path.
+ *   - Never throws into Java; failures return kPixelmatchUnsupported and the
+ *     caller falls back to the Java implementation.
+ */
+
+#include <android/bitmap.h>
+#include <jni.h>
+
+#include "PixelmatchKernel.h"
+
+using sherlo::kPixelmatchUnsupported;
+using sherlo::PixelmatchImage;
+
+namespace {
+
+// Reads the info of an RGBA_8888 bitmap; false for any other format
+static bool getRgbaInfo(JNIEnv* env, jobject bitmap, AndroidBitmapInfo* info) {
+    return bitmap != nullptr &&
+           AndroidBitmap_getInfo(env, bitmap, info) == ANDROID_BITMAP_RESULT_SUCCESS &&
+           info->format == ANDROID_BITMAP_FORMAT_RGBA_8888;
+}
+
+} // anonymous namespace
+
+extern "C" {
+
+/**
+ * Counts the pixels in which two bitmaps differ, see
+ * sherlo::countMismatchedPixels.
+ *
+ * Signature must match the Java native declaration in NativePixelmatch.java:
+ *   private static native int nativeCount(Bitmap bitmap1, Bitmap bitmap2, long[] ignoreMask,
+ *           long maxDelta, boolean includeAA, boolean premultiplied, int maxDiffs);
+ */
+JNIEXPORT jint JNICALL
+Java_io_sherlo_storybookreactnative_NativePixelmatch_nativeCount(
+        JNIEnv* env, jclass /*clazz*/, jobject bitmap1, jobject bitmap2,
+        jlongArray ignoreMask, jlong maxDelta, jboolean includeAA,
+        jboolean premultiplied, jint maxDiffs) {
+
+    AndroidBitmapInfo info1;
+    AndroidBitmapInfo info2;
+    if (!getRgbaInfo(env, bitmap1, &info1) || !getRgbaInfo(env, bitmap2, &info2) ||
+        info1.width != info2.width || info1.height != info2.height) {
+        return kPixelmatchUnsupported;
+    }
+
+    void* pixels1 = nullptr;
+    void* pixels2 = nullptr;
+    if (AndroidBitmap_lockPixels(env, bitmap1, &pixels1) != ANDROID_BITMAP_RESULT_SUCCESS) {
+        return kPixelmatchUnsupported;
+    }
+    if (AndroidBitmap_lockPixels(env, bitmap2, &pixels2) != ANDROID_BITMAP_RESULT_SUCCESS) {
+        AndroidBitmap_unlockPixels(env, bitmap1);
+        return kPixelmatchUnsupported;
+    }
+
+    // The mask is only read; critical access avoids copying it. No JNI calls until released.
+    jlong* mask = nullptr;
+    if (ignoreMask != nullptr) {
+        mask = static_cast<jlong*>(env->GetPrimitiveArrayCritical(ignoreMask, nullptr));
+    }
+
+    jint result = kPixelmatchUnsupported;
+    if (ignoreMask == nullptr || mask != nullptr) {
+        PixelmatchImage image1 = { static_cast<const uint8_t*>(pixels1), info1.stride };
+        PixelmatchImage image2 = { static_cast<const uint8_t*>(pixels2), info2.stride };
+        result = sherlo::countMismatchedPixels(
+                image1, image2, static_cast<int32_t>(info1.width), static_cast<int32_t>(info1.height),
+                reinterpret_cast<const int64_t*>(mask), maxDelta, includeAA == JNI_TRUE,
+                premultiplied == JNI_TRUE, maxDiffs);
+    }
+
+    if (mask != nullptr) {
+        env->ReleasePrimitiveArrayCritical(ignoreMask, mask, JNI_ABORT);
+    }
+    AndroidBitmap_unlockPixels(env, bitmap2);
+    AndroidBitmap_unlockPixels(env, bitmap1);
+    return result;
+}
+
+} // extern "C"
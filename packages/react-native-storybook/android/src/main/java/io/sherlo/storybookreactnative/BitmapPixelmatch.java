@@ -0,0 +1,47 @@
+package io.sherlo.storybookreactnative;
+
+import android.graphics.Bitmap;
+
+/**
+ * Bitmap entry point for {@link Pixelmatch}. The comparison core lives in the pure-Java
+ * src/core source set so it can be benchmarked on a desktop JVM; this is the only part of
+ * it that needs the Android framework.
+ */
+public class BitmapPixelmatch {
+    /**
+     * Compare two equally sized images pixel by pixel and return the number of mismatched pixels.
+     * Runs in the native kernel when it can (see NativePixelmatch), in Java otherwise.
+     *
+     * @param img1      First image (Bitmap).
+     * @param img2      Second image (Bitmap).
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive.
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences.
+     * @return The number of pixels that differ beyond the threshold.
+     * @throws IllegalArgumentException if images are null or have different dimensions.
+     */
+    public static int pixelmatch(Bitmap img1, Bitmap img2, double threshold, boolean includeAA) {
+        if (img1 == null || img2 == null) {
+            throw new IllegalArgumentException("Image data must not be null.");
+        }
+        int width = img1.getWidth();
+        int height = img1.getHeight();
+        if (width != img2.getWidth() || height != img2.getHeight()) {
+            throw new IllegalArgumentException("Image sizes do not match. " +
+                    "Image1: " + width + "x" + height +
+                    ", Image2: " + img2.getWidth() + "x" + img2.getHeight());
+        }
+
+        int nativeCount = NativePixelmatch.pixelmatch(img1, img2, null, threshold, includeAA, Integer.MAX_VALUE);
+        if (nativeCount != NativePixelmatch.UNSUPPORTED) {
+            return nativeCount;
+        }
+
+        int totalPixels = width * height;
+        int[] pixels1 = new int[totalPixels];
+        int[] pixels2 = new int[totalPixels];
+        img1.getPixels(pixels1, 0, width, 0, 0, width, height);
+        img2.getPixels(pixels2, 0, width, 0, 0, width, height);
+
+        return Pixelmatch.pixelmatch(pixels1, pixels2, width, height, threshold, includeAA);
+    }
+}
@@ -0,0 +1,86 @@
+package io.sherlo.storybookreactnative;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+
+/**
+ * Small pool of ARGB_8888 bitmaps of one size, owned by a single stability check.
+ * A full-screen frame is a 10+ MB native allocation; with every captured frame rendered
+ * into a pooled bitmap and handed back once it has been compared, a check allocates only
+ * during its first iterations (as many bitmaps as are in use at once) and then reuses them.
+ *
+ * Bitmaps of another size than the one requested (e.g. after a rotation) are recycled
+ * instead of reused. Thread-safe: frames are captured and handed back on different threads.
+ */
+public class BitmapPool {
+    private final int capacity;
+    private final ArrayDeque<Bitmap> free = new ArrayDeque<>();
+    private int allocationCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity Number of free bitmaps kept for reuse; more are recycled when handed back
+     */
+    public BitmapPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a bitmap of the given size, reused if one is free, newly allocated otherwise.
+     * A reused bitmap still holds the pixels of its previous frame; callers that do not
+     * overwrite all of them must erase it first.
+     *
+     * @param width  Width in pixels
+     * @param height Height in pixels
+     * @return A mutable ARGB_8888 bitmap owned by the caller until released
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        while (!free.isEmpty()) {
+            Bitmap bitmap = free.pop();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && !bitmap.isRecycled()) {
+                return bitmap;
+            }
+            bitmap.recycle(); // left over from another frame size
+        }
+        allocationCount++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Hands a bitmap back for reuse, or recycles it if the pool is full or closed.
+     *
+     * @param bitmap A bitmap from acquire that is no longer used
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (closed || free.size() >= capacity) {
+            bitmap.recycle();
+            return;
+        }
+        free.push(bitmap);
+    }
+
+    /**
+     * Returns how many bitmaps the pool has allocated so far.
+     *
+     * @return The number of allocations
+     */
+    public synchronized int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Recycles the free bitmaps. Bitmaps still in use are recycled when they are released.
+     */
+    public synchronized void close() {
+        closed = true;
+        while (!free.isEmpty()) {
+            free.pop().recycle();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.sherlo.storybookreactnative;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * Process-wide threads for screenshot capture, shared by all stability checks:
+ * a looper thread that receives PixelCopy callbacks, a worker that runs the capture
+ * steps of the stability loops (nudges and copy waits), a compare thread that
+ * compares the captured frames, so one frame is captured while the previous one is
+ * compared, and a writer thread that encodes saved screenshots (ScreenshotWriter).
+ *
+ * The threads are started on first use - stability checks only run in testing mode,
+ * so other modes never start them - and kept across stories, so no thread is created
+ * or torn down on the per-frame capture path. shutdown() stops them with the module;
+ * the next use after that starts them again.
+ */
+public final class CaptureExecutor {
+    private static final String TAG = "SherloModule:CaptureExecutor";
+
+    private static HandlerThread copyThread = null;
+    private static Handler copyHandler = null;
+    private static HandlerThread workerThread = null;
+    private static Handler workerHandler = null;
+    private static HandlerThread compareThread = null;
+    private static Handler compareHandler = null;
+    private static HandlerThread writerThread = null;
+    private static Handler writerHandler = null;
+
+    /**
+     * Returns the handler PixelCopy callbacks are delivered on.
+     *
+     * @return The handler of the PixelCopy looper thread
+     */
+    public static synchronized Handler getCopyHandler() {
+        if (copyHandler == null) {
+            copyThread = new HandlerThread("SherloPixelCopy");
+            copyThread.start();
+            copyHandler = new Handler(copyThread.getLooper());
+        }
+        return copyHandler;
+    }
+
+    /**
+     * Returns the handler of the worker that runs the capture steps of stability loops.
+     * Loops of concurrent checks are interleaved on it, one step at a time.
+     *
+     * @return The handler of the stability worker thread
+     */
+    public static synchronized Handler getWorkerHandler() {
+        if (workerHandler == null) {
+            workerThread = new HandlerThread("SherloStabilityLoop");
+            workerThread.start();
+            workerHandler = new Handler(workerThread.getLooper());
+        }
+        return workerHandler;
+    }
+
+    /**
+     * Returns the handler frames are compared on, in the order they are posted.
+     *
+     * @return The handler of the frame compare thread
+     */
+    public static synchronized Handler getCompareHandler() {
+        if (compareHandler == null) {
+            compareThread = new HandlerThread("SherloFrameCompare");
+            compareThread.start();
+            compareHandler = new Handler(compareThread.getLooper());
+        }
+        return compareHandler;
+    }
+
+    /**
+     * Returns the handler saved screenshots are encoded and written on.
+     *
+     * @return The handler of the screenshot writer thread
+     */
+    public static synchronized Handler getWriterHandler() {
+        if (writerHandler == null) {
+            writerThread = new HandlerThread("SherloScreenshotWriter");
+            writerThread.start();
+            writerHandler = new Handler(writerThread.getLooper());
+        }
+        return writerHandler;
+    }
+
+    /**
+     * Stops the threads once they have handled what is already due. Called when the
+     * module is invalidated (e.g. on reload).
+     */
+    public static synchronized void shutdown() {
+        if (copyThread != null || workerThread != null || compareThread != null || writerThread != null) {
+            Log.d(TAG, "Shutting down capture threads");
+        }
+        if (copyThread != null) {
+            copyThread.quitSafely();
+            copyThread = null;
+            copyHandler = null;
+        }
+        if (workerThread != null) {
+            workerThread.quitSafely();
+            workerThread = null;
+            workerHandler = null;
+        }
+        if (compareThread != null) {
+            compareThread.quitSafely();
+            compareThread = null;
+            compareHandler = null;
+        }
+        if (writerThread != null) {
+            writerThread.quitSafely();
+            writerThread = null;
+            writerHandler = null;
+        }
+    }
+
+    // Utility class; no instantiation.
+    private CaptureExecutor() {}
+}
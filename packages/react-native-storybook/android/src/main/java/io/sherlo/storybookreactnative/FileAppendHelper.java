@@ -0,0 +1,355 @@
+package io.sherlo.storybookreactnative;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide appender for the files in the sync directory.
+ * Keeps one append-mode FileChannel open per file and funnels every append through a
+ * single writer thread, so chatty test runs don't open and close a stream per line.
+ * Before each write the channel is checked against the file at its path, so a file the
+ * runner deleted, recreated or replaced is reopened instead of written to the old one.
+ *
+ * Sync appends block until their bytes (and everything queued before them) are written,
+ * which is what the runner relies on for protocol items. Lazy appends are buffered and
+ * written in batches at most FLUSH_DELAY_MS later, or earlier by the next sync append or
+ * flushPending().
+ */
+public final class FileAppendHelper {
+    private static final String TAG = "SherloModule:FileAppendHelper";
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long FLUSH_DELAY_MS = 200;
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+
+    /**
+     * A queued append; a request without a file only forces a flush, one with a task runs
+     * it once everything before it is written.
+     */
+    private static final class Request {
+        final File file;
+        final byte[] bytes;
+        final boolean sync;
+        final Runnable task;
+        final CountDownLatch done = new CountDownLatch(1);
+        IOException error;
+
+        Request(File file, byte[] bytes, boolean sync) {
+            this(file, bytes, sync, null);
+        }
+
+        Request(File file, byte[] bytes, boolean sync, Runnable task) {
+            this.file = file;
+            this.bytes = bytes;
+            this.sync = sync;
+            this.task = task;
+        }
+    }
+
+    private static FileAppendHelper instance = null;
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // Owned by the writer thread
+    private final Map<String, FileOutputStream> streams = new HashMap<>();
+    private final Map<String, ByteArrayOutputStream> pending = new LinkedHashMap<>();
+    private int pendingBytes = 0;
+    private long oldestPendingAt = 0;
+
+    /**
+     * Returns the shared appender, starting its writer thread on first use.
+     * Shared so every FileSystemHelper instance writes through the same channels.
+     *
+     * @return The process-wide appender
+     */
+    public static synchronized FileAppendHelper getInstance() {
+        if (instance == null) {
+            instance = new FileAppendHelper();
+        }
+        return instance;
+    }
+
+    private FileAppendHelper() {
+        Thread thread = new Thread(this::run, "SherloFileWriter");
+        // Never keep the process alive; unflushed lazy appends are lost on exit by design
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues bytes to be appended to a file. Blocks while the queue is full.
+     *
+     * @param file The file to append to
+     * @param bytes The bytes to append
+     * @param sync If true, waits until the bytes are written and rethrows any write error
+     * @throws IOException If a sync append failed or the caller was interrupted while waiting
+     */
+    public void append(File file, byte[] bytes, boolean sync) throws IOException {
+        submit(new Request(file, bytes, sync));
+    }
+
+    /**
+     * Writes out all lazy appends queued so far and waits for it.
+     *
+     * @throws IOException If the caller was interrupted while waiting
+     */
+    public void flush() throws IOException {
+        submit(new Request(null, null, true));
+    }
+
+    /**
+     * Writes out all lazy appends queued so far and waits for it, rethrowing the write
+     * error of the given file, if any.
+     *
+     * @param file The file whose write errors are reported
+     * @throws IOException If writing the file failed or the caller was interrupted while waiting
+     */
+    public void flush(File file) throws IOException {
+        submit(new Request(file, new byte[0], true));
+    }
+
+    /**
+     * Runs a task on the writer thread once everything queued before it is written, without
+     * waiting for it. For bookkeeping that follows appends (e.g. the protocol index), so it
+     * stays off the caller's thread. Errors thrown by the task are logged.
+     *
+     * @param task The task to run
+     * @throws IOException If the caller was interrupted while the queue was full
+     */
+    public void runAfterWrites(Runnable task) throws IOException {
+        submit(new Request(null, null, false, task));
+    }
+
+    /**
+     * Writes out the lazy appends queued so far if the appender was ever started, logging
+     * any error. Called when the process may be killed next (module teardown, memory
+     * trimming), so the last log lines are not lost with the buffer.
+     */
+    public static void flushPending() {
+        FileAppendHelper appender;
+        synchronized (FileAppendHelper.class) {
+            appender = instance;
+        }
+        if (appender == null) return;
+
+        try {
+            appender.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error flushing pending appends", e);
+        }
+    }
+
+    private void submit(Request request) throws IOException {
+        try {
+            queue.put(request);
+            if (request.sync) {
+                request.done.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while appending to file");
+        }
+
+        if (request.error != null) {
+            throw request.error;
+        }
+    }
+
+    /**
+     * Writer thread loop: buffers requests per file and writes them out when a sync
+     * request arrives, the buffer grows too large or the oldest lazy append is due.
+     */
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        List<Request> waiting = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+
+        while (true) {
+            try {
+                Request first;
+                if (pending.isEmpty()) {
+                    first = queue.take();
+                } else {
+                    long delay = oldestPendingAt + FLUSH_DELAY_MS - System.currentTimeMillis();
+                    first = delay > 0 ? queue.poll(delay, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+
+                for (Request request : batch) {
+                    if (request.file != null) {
+                        buffer(request.file, request.bytes);
+                    }
+                    if (request.sync) {
+                        waiting.add(request);
+                    }
+                    if (request.task != null) {
+                        tasks.add(request.task);
+                    }
+                }
+                batch.clear();
+
+                boolean isDue = !pending.isEmpty()
+                        && System.currentTimeMillis() - oldestPendingAt >= FLUSH_DELAY_MS;
+                if (waiting.isEmpty() && tasks.isEmpty() && !isDue && pendingBytes < MAX_PENDING_BYTES) {
+                    continue;
+                }
+
+                Map<String, IOException> errors = writePending();
+                for (Request request : waiting) {
+                    if (request.file != null) {
+                        request.error = errors.get(request.file.getAbsolutePath());
+                    }
+                    request.done.countDown();
+                }
+                waiting.clear();
+
+                for (Runnable task : tasks) {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Error running task after writes", t);
+                    }
+                }
+                tasks.clear();
+            } catch (Throwable t) {
+                // Keep the writer alive; a dead writer would block every sync append forever
+                Log.e(TAG, "Unexpected error in writer thread", t);
+                for (Request request : batch) {
+                    if (request.sync && !waiting.contains(request)) {
+                        waiting.add(request);
+                    }
+                }
+                // The bytes may never have reached the file; fail sync appends like an I/O error
+                for (Request request : waiting) {
+                    request.error = new IOException("writer failed", t);
+                    request.done.countDown();
+                }
+                waiting.clear();
+                batch.clear();
+                tasks.clear();
+            }
+        }
+    }
+
+    private void buffer(File file, byte[] bytes) {
+        String path = file.getAbsolutePath();
+        ByteArrayOutputStream buffer = pending.get(path);
+        if (buffer == null) {
+            buffer = new ByteArrayOutputStream();
+            pending.put(path, buffer);
+        }
+        if (pendingBytes == 0) {
+            oldestPendingAt = System.currentTimeMillis();
+        }
+        buffer.write(bytes, 0, bytes.length);
+        pendingBytes += bytes.length;
+    }
+
+    /**
+     * Writes every buffered file out through its channel.
+     *
+     * @return Write errors keyed by absolute file path
+     */
+    private Map<String, IOException> writePending() {
+        Map<String, IOException> errors = new HashMap<>();
+
+        Iterator<Map.Entry<String, ByteArrayOutputStream>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ByteArrayOutputStream> entry = iterator.next();
+            String path = entry.getKey();
+            iterator.remove();
+
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(entry.getValue().toByteArray());
+                FileChannel channel = getChannel(path);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error appending to file: " + path, e);
+                closeChannel(path);
+                errors.put(path, e);
+            }
+        }
+
+        pendingBytes = 0;
+        return errors;
+    }
+
+    /**
+     * Returns the open append channel for a file, reopening it if the file at the path is
+     * no longer the one it writes to (e.g. the runner cleared the sync directory or
+     * replaced the file since the last write).
+     */
+    private FileChannel getChannel(String path) throws IOException {
+        File file = new File(path);
+        FileOutputStream stream = streams.get(path);
+        if (stream != null && (!stream.getChannel().isOpen() || isReplaced(stream, file))) {
+            closeChannel(path);
+            stream = null;
+        }
+
+        if (stream == null) {
+            stream = new FileOutputStream(file, true);
+            streams.put(path, stream);
+        }
+        return stream.getChannel();
+    }
+
+    /**
+     * Returns whether the file at the path was deleted or replaced since the stream opened
+     * it. Writes to the old file would go to an unlinked inode and never be read.
+     */
+    private static boolean isReplaced(FileOutputStream stream, File file) throws IOException {
+        if (!file.exists()) return true;
+        // Appends only grow the file, so a shorter file at the path is a different one
+        if (stream.getChannel().position() > file.length()) return true;
+
+        // Os is only available on API 21+; below that a replacement at least as long as the
+        // old file goes unnoticed
+        if (Build.VERSION.SDK_INT < 21) return false;
+        try {
+            StructStat open = Os.fstat(stream.getFD());
+            StructStat current = Os.stat(file.getAbsolutePath());
+            return open.st_ino != current.st_ino || open.st_dev != current.st_dev;
+        } catch (ErrnoException e) {
+            // Deleted in the meantime
+            return true;
+        }
+    }
+
+    private void closeChannel(String path) {
+        FileOutputStream stream = streams.remove(path);
+        if (stream == null) return;
+
+        try {
+            stream.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing channel: " + path, e);
+        }
+    }
+}
@@ -4,13 +4,19 @@ import android.content.Context;
 import android.net.Uri;
 import android.util.Base64;
 import android.util.Log;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Helper for file system operations in the Sherlo module.
@@ -18,9 +24,25 @@ import java.io.OutputStream;
  * and provides methods for reading and writing data with Base64 encoding.
  */
 public class FileSystemHelper {
+    /** Complete lines read from a file plus the byte offset right after them. */
+    public static final class TextChunk {
+        public final String content;
+        public final long cursor;
+
+        TextChunk(String content, long cursor) {
+            this.content = content;
+            this.cursor = cursor;
+        }
+    }
+
     private static final String TAG = "SherloModule:FileSystemHelper";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // JS log lines are written in batches; JS calls flushFile after the ones the runner waits for
+    private static final String LOG_FILENAME = "log.sherlo";
     private final Context context;
     private final String syncDirectoryPath;
+    // Set while a protocol index update is queued, so a burst of appends queues only one
+    private final AtomicBoolean protocolIndexUpdateQueued = new AtomicBoolean(false);
 
     /**
      * Initializes the helper with the application context and sets up the sync directory.
@@ -49,6 +71,7 @@ public class FileSystemHelper {
     
     /**
      * Appends base64 encoded content to a file and handles promises for React Native.
+     * Protocol appends resolve once written; log appends resolve once queued.
      *
      * @param filename The name of the file to append to
      * @param base64Content The base64 encoded content to append
@@ -57,10 +80,7 @@ public class FileSystemHelper {
     public void appendFileWithPromise(String filename, String base64Content, Promise promise) {
         try {
             byte[] bytes = Base64.decode(base64Content, Base64.DEFAULT);
-            Uri uri = getFileUri(filename);
-            OutputStream stream = context.getContentResolver().openOutputStream(uri, "wa");
-            stream.write(bytes);
-            stream.close();
+            append(filename, bytes, isSyncFile(filename));
 
             promise.resolve(null);
         } catch (Exception e) {
@@ -87,6 +107,99 @@ public class FileSystemHelper {
         }
     }
 
+    /**
+     * Appends UTF-8 text to a file and handles promises for React Native.
+     * Text counterpart of appendFileWithPromise that skips the base64 round trip.
+     *
+     * @param filename The name of the file to append to
+     * @param content The text to append
+     * @param promise Promise to resolve when successful or reject with an error
+     */
+    public void appendTextWithPromise(String filename, String content, Promise promise) {
+        try {
+            byte[] bytes = content.getBytes(UTF_8);
+            append(filename, bytes, isSyncFile(filename));
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            handleError("ERROR_APPEND_TEXT", e, promise, "Error appending text to file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes out the appends queued so far and resolves once they are on disk. Log appends
+     * resolve once queued, so JS calls this after the lines the runner waits for.
+     *
+     * @param filename The name of the file whose appends must be written
+     * @param promise Promise to resolve when written or reject with the file's write error
+     */
+    public void flushFileWithPromise(String filename, Promise promise) {
+        try {
+            FileAppendHelper.getInstance().flush(getFile(filename));
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            handleError("ERROR_FLUSH_FILE", e, promise, "Error flushing file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a file as UTF-8 text and returns it via a promise.
+     * Unlike readFileWithPromise, an empty file resolves with an empty string.
+     *
+     * @param filename The name of the file to read
+     * @param promise Promise to resolve with the file content or reject with an error
+     */
+    public void readTextWithPromise(String filename, Promise promise) {
+        try {
+            promise.resolve(readText(filename));
+        } catch (Exception e) {
+            handleError("ERROR_READ_TEXT", e, promise, "Error reading text file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the complete lines appended to a file after the given byte offset and
+     * resolves the promise with a map: {content: string, cursor: number}.
+     *
+     * @param filename The name of the file to read
+     * @param cursor Byte offset returned by the previous call (0 to read from the start)
+     * @param promise Promise to resolve with the new lines or reject with an error
+     */
+    public void readFileFromWithPromise(String filename, double cursor, Promise promise) {
+        try {
+            promise.resolve(toWritableMap(readFileFrom(filename, (long) cursor)));
+        } catch (Exception e) {
+            handleError("ERROR_READ_FILE_FROM", e, promise, "Error reading file from offset: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the last complete lines of a file and resolves the promise with a map:
+     * {content: string, cursor: number}. The cursor can be passed to readFileFrom
+     * to continue reading from the end of the returned lines.
+     *
+     * @param filename The name of the file to read
+     * @param lineCount The maximum number of lines to return
+     * @param promise Promise to resolve with the lines or reject with an error
+     */
+    public void tailLinesWithPromise(String filename, int lineCount, Promise promise) {
+        try {
+            promise.resolve(toWritableMap(tailLines(filename, lineCount)));
+        } catch (Exception e) {
+            handleError("ERROR_TAIL_LINES", e, promise, "Error reading file tail: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the absolute path of the sync directory.
+     *
+     * @return The sync directory path
+     */
+    public String getSyncDirectoryPath() {
+        return this.syncDirectoryPath;
+    }
+
     /**
      * Checks if a file exists in the sync directory.
      *
@@ -99,18 +212,16 @@ public class FileSystemHelper {
     }
 
     /**
-     * Appends content to a file.
+     * Appends content to a file and waits until it is written.
+     * Native callers write protocol items and crash diagnostics, which must not be
+     * left buffered when the process dies right after.
      *
      * @param filename The name of the file to append to
      * @param content The content to append
      */
     public void appendFile(String filename, String content) {
         try {
-            byte[] bytes = content.getBytes();
-            Uri uri = getFileUri(filename);
-            OutputStream stream = context.getContentResolver().openOutputStream(uri, "wa");
-            stream.write(bytes);
-            stream.close();
+            append(filename, content.getBytes(), true);
         } catch (Exception e) {
             Log.e(TAG, "Error appending to file: " + e.getMessage());
         }
@@ -124,12 +235,33 @@ public class FileSystemHelper {
      * @throws Exception If there's an error during file access or reading
      */
     public String readFile(String filename) throws Exception {
+        return Base64.encodeToString(readBytes(filename), Base64.NO_WRAP);
+    }
+
+    /**
+     * Reads a file and returns its content as UTF-8 text.
+     *
+     * @param filename The name of the file to read
+     * @return The file content
+     * @throws Exception If there's an error during file access or reading
+     */
+    public String readText(String filename) throws Exception {
+        return new String(readBytes(filename), UTF_8);
+    }
+
+    /**
+     * Reads the whole content of a file.
+     *
+     * @param filename The name of the file to read
+     * @return The file content
+     * @throws Exception If there's an error during file access or reading
+     */
+    private byte[] readBytes(String filename) throws Exception {
         Uri uri = getFileUri(filename);
         
         InputStream inputStream = context.getContentResolver().openInputStream(uri);
         ByteArrayOutputStream byteBuffer = new ByteArrayOutputStream();
 
-        byte[] bytesResult;
         byte[] buffer = new byte[1024];
 
         try {
@@ -137,16 +269,153 @@ public class FileSystemHelper {
             while ((len = inputStream.read(buffer)) != -1) {
                 byteBuffer.write(buffer, 0, len);
             }
-            bytesResult = byteBuffer.toByteArray();
+            return byteBuffer.toByteArray();
         } finally {
             try {
+                inputStream.close();
                 byteBuffer.close();
             } catch (IOException e) {
-                Log.e(TAG, "Error closing byteBuffer", e);
+                Log.e(TAG, "Error closing streams", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the complete lines appended to a file after the given byte offset.
+     * Uses a positional read so only the bytes past the offset are touched. A trailing
+     * line without a newline is left for the next call, which keeps the cursor on a
+     * line (and therefore UTF-8 character) boundary.
+     *
+     * @param filename The name of the file to read
+     * @param offset Byte offset to read from; reset to 0 if the file is now shorter
+     * @return The new lines and the cursor to pass to the next call
+     * @throws IOException If there's an error during file access or reading
+     */
+    public TextChunk readFileFrom(String filename, long offset) throws IOException {
+        File file = getFile(filename);
+        if (!file.exists()) {
+            return new TextChunk("", 0);
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            if (offset < 0 || offset > length) {
+                // File was truncated or recreated since the cursor was taken
+                offset = 0;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length - offset, Integer.MAX_VALUE));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                // keep reading until the buffer is full or EOF
+            }
+
+            byte[] bytes = buffer.array();
+            int end = buffer.position();
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+
+            return new TextChunk(new String(bytes, 0, end, UTF_8), offset + end);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads up to the last lineCount complete lines of a file.
+     * Scans backwards from the end in fixed-size chunks, so the cost depends on the
+     * length of the returned lines rather than the size of the file.
+     *
+     * @param filename The name of the file to read
+     * @param lineCount The maximum number of lines to return
+     * @return The lines and the cursor pointing right after the last complete line
+     * @throws IOException If there's an error during file access or reading
+     */
+    public TextChunk tailLines(String filename, int lineCount) throws IOException {
+        File file = getFile(filename);
+        if (!file.exists()) {
+            return new TextChunk("", 0);
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ReverseLineReader reader = new ReverseLineReader(channel, channel.size());
+
+            // The text after the last newline is a line still being written, skip it.
+            // end: right after the last newline; start: where the lineCount-th line
+            // counted from the end begins (or 0 when the file is shorter)
+            reader.readLine();
+            long end = reader.getLineStart();
+            long start = end;
+            for (int i = 0; i < lineCount && reader.readLine() != null; i++) {
+                start = reader.getLineStart();
+            }
+
+            ByteBuffer lines = ByteBuffer.allocate((int) (end - start));
+            while (lines.hasRemaining() && channel.read(lines, start + lines.position()) > 0) {
+                // keep reading until the buffer is full
             }
+
+            return new TextChunk(new String(lines.array(), 0, lines.position(), UTF_8), end);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns the file in the sync directory with the given name.
+     *
+     * @param filename The name of the file
+     * @return A File object representing the file's location
+     */
+    public File getFile(String filename) {
+        return new File(this.syncDirectoryPath, filename);
+    }
+
+    /**
+     * Appends bytes to a file through the shared appender and keeps the protocol index
+     * in step with native protocol appends. The index is updated on the writer thread
+     * after the append, so a protocol append stays a single queued write for the caller.
+     *
+     * @param filename The name of the file to append to
+     * @param bytes The bytes to append
+     * @param sync Whether to wait until the bytes are written
+     * @throws IOException If a sync append failed
+     */
+    private void append(String filename, byte[] bytes, boolean sync) throws IOException {
+        FileAppendHelper appender = FileAppendHelper.getInstance();
+        appender.append(getFile(filename), bytes, sync);
+
+        if (ProtocolIndexHelper.PROTOCOL_FILENAME.equals(filename)
+                && protocolIndexUpdateQueued.compareAndSet(false, true)) {
+            appender.runAfterWrites(() -> {
+                protocolIndexUpdateQueued.set(false);
+                ProtocolIndexHelper.update(this);
+            });
         }
+    }
 
-        return Base64.encodeToString(bytesResult, Base64.NO_WRAP);
+    /**
+     * Returns whether appends to a file must be written before the call returns.
+     *
+     * @param filename The name of the file
+     * @return False for the log file, which is written lazily (see flushFileWithPromise)
+     */
+    private static boolean isSyncFile(String filename) {
+        return !LOG_FILENAME.equals(filename);
+    }
+
+    /**
+     * Converts a text chunk to the map shape returned over the bridge.
+     */
+    private static WritableMap toWritableMap(TextChunk chunk) {
+        WritableMap map = Arguments.createMap();
+        map.putString("content", chunk.content);
+        map.putDouble("cursor", chunk.cursor);
+        return map;
     }
 
     /**
@@ -0,0 +1,234 @@
+package io.sherlo.storybookreactnative;
+
+import android.os.Build;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper for waiting on lines appended to files in the sync directory.
+ * Watches the directory with a FileObserver (inotify) so a pending wait resolves as
+ * soon as the runner appends a line, instead of on the next fixed-interval poll.
+ * One observer is kept from the first wait until shutdown(), so back-to-back waits
+ * (JS waits for ACKs in a loop) don't add and remove an inotify watch each time.
+ */
+public class FileWatchHelper {
+    private static final String TAG = "SherloModule:FileWatchHelper";
+    private static final int WATCHED_EVENTS =
+            FileObserver.MODIFY | FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.CREATE;
+    // The watch ends with the directory itself (e.g. the runner recreated it)
+    private static final int DIRECTORY_GONE_EVENTS = FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    /** A pending awaitFileAppend call. */
+    private static final class Waiter {
+        final String filename;
+        final long cursor;
+        final Promise promise;
+        Runnable timeout;
+
+        Waiter(String filename, long cursor, Promise promise) {
+            this.filename = filename;
+            this.cursor = cursor;
+            this.promise = promise;
+        }
+    }
+
+    private final FileSystemHelper fileSystemHelper;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    // Guarded by waiters. Watching from the first wait until shutdown; the reference must be
+    // kept, a garbage-collected FileObserver silently stops delivering events.
+    private FileObserver observer = null;
+    private HandlerThread handlerThread = null;
+    private Handler handler = null;
+
+    /**
+     * Initializes the helper for the sync directory of the given file system helper.
+     *
+     * @param fileSystemHelper The file system helper used to read the appended lines
+     */
+    public FileWatchHelper(FileSystemHelper fileSystemHelper) {
+        this.fileSystemHelper = fileSystemHelper;
+    }
+
+    /**
+     * Waits until complete lines are appended to a file after the given byte offset and
+     * resolves the promise with a map: {content: string, cursor: number}.
+     * If nothing is appended within timeoutMs, resolves with empty content and the same
+     * cursor, so a missed file event never costs more than one timeout.
+     *
+     * @param filename The name of the file to watch
+     * @param cursor Byte offset returned by the previous read
+     * @param timeoutMs Maximum time to wait for new lines in milliseconds
+     * @param promise Promise to resolve with the new lines or reject with an error
+     */
+    public void awaitFileAppend(String filename, double cursor, int timeoutMs, Promise promise) {
+        final Waiter waiter = new Waiter(filename, (long) cursor, promise);
+        waiter.timeout = () -> check(waiter, true);
+
+        Handler watchHandler;
+        synchronized (waiters) {
+            waiters.add(waiter);
+            startWatching();
+            watchHandler = getHandler();
+        }
+
+        // Lines appended before the observer was started (or before this wait) produce no event
+        watchHandler.post(() -> check(waiter, false));
+        watchHandler.postDelayed(waiter.timeout, Math.max(timeoutMs, 1));
+    }
+
+    /**
+     * Reads the lines appended after the waiter's cursor and resolves it if there are any,
+     * or unconditionally when it timed out.
+     */
+    private void check(Waiter waiter, boolean timedOut) {
+        try {
+            FileSystemHelper.TextChunk chunk = fileSystemHelper.readFileFrom(waiter.filename, waiter.cursor);
+            if ((timedOut || !chunk.content.isEmpty()) && remove(waiter)) {
+                WritableMap map = Arguments.createMap();
+                map.putString("content", chunk.content);
+                map.putDouble("cursor", chunk.cursor);
+                waiter.promise.resolve(map);
+            }
+        } catch (Exception e) {
+            if (remove(waiter)) {
+                Log.e(TAG, "Error reading appended lines", e);
+                waiter.promise.reject("error_await_file_append", "Error reading appended lines: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes a waiter. The observer keeps watching for the next one.
+     *
+     * @return True if the waiter was still pending, false if it was already settled
+     */
+    private boolean remove(Waiter waiter) {
+        synchronized (waiters) {
+            if (!waiters.remove(waiter)) {
+                return false;
+            }
+            if (handler != null) {
+                handler.removeCallbacks(waiter.timeout);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops watching and quits the helper thread, when the module is invalidated (e.g. on
+     * reload). Pending waits resolve with empty content and their cursor, like a timeout.
+     * A later wait starts watching again on a new thread.
+     */
+    public void shutdown() {
+        List<Waiter> pending;
+        HandlerThread thread;
+        synchronized (waiters) {
+            pending = new ArrayList<>(waiters);
+            waiters.clear();
+            if (observer != null) {
+                observer.stopWatching();
+                observer = null;
+            }
+            if (handler != null) {
+                handler.removeCallbacksAndMessages(null);
+            }
+            thread = handlerThread;
+            handlerThread = null;
+            handler = null;
+        }
+
+        if (thread != null) {
+            thread.quitSafely();
+        }
+        for (Waiter waiter : pending) {
+            WritableMap map = Arguments.createMap();
+            map.putString("content", "");
+            map.putDouble("cursor", waiter.cursor);
+            waiter.promise.resolve(map);
+        }
+    }
+
+    /**
+     * Called on the FileObserver thread for every event in the sync directory.
+     * Hands the check over to the helper thread so reads never run concurrently.
+     */
+    private void onFileEvent(final String filename) {
+        synchronized (waiters) {
+            for (final Waiter waiter : waiters) {
+                if (waiter.filename.equals(filename) && handler != null) {
+                    handler.post(() -> check(waiter, false));
+                }
+            }
+        }
+    }
+
+    /**
+     * Called on the FileObserver thread when the sync directory was deleted or moved, which
+     * ends its watch. The next wait watches the directory at the path again.
+     */
+    private void onDirectoryGone(FileObserver goneObserver) {
+        synchronized (waiters) {
+            if (observer == goneObserver) {
+                observer.stopWatching();
+                observer = null;
+            }
+        }
+    }
+
+    // Must be called while holding the waiters lock
+    private void startWatching() {
+        if (observer != null) return;
+
+        String path = fileSystemHelper.getSyncDirectoryPath();
+        // A missing directory can't be watched; waits rely on their reads until it exists
+        if (!new File(path).isDirectory()) return;
+
+        // The String constructor is deprecated from API 29 on
+        observer = Build.VERSION.SDK_INT >= 29
+                ? new SyncDirectoryObserver(new File(path))
+                : new SyncDirectoryObserver(path);
+        observer.startWatching();
+    }
+
+    // Must be called while holding the waiters lock
+    private Handler getHandler() {
+        if (handler == null) {
+            handlerThread = new HandlerThread("SherloFileWatch");
+            handlerThread.start();
+            handler = new Handler(handlerThread.getLooper());
+        }
+        return handler;
+    }
+
+    /** Forwards the events of the sync directory to onFileEvent. */
+    private final class SyncDirectoryObserver extends FileObserver {
+        // API 29+
+        SyncDirectoryObserver(File directory) {
+            super(directory, WATCHED_EVENTS);
+        }
+
+        @SuppressWarnings("deprecation")
+        SyncDirectoryObserver(String path) {
+            super(path, WATCHED_EVENTS);
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            if ((event & DIRECTORY_GONE_EVENTS) != 0) {
+                onDirectoryGone(this);
+            } else if (path != null) {
+                onFileEvent(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.sherlo.storybookreactnative;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Counts the frames a window commits, for stability checks that capture right after a
+ * frame was drawn instead of polling at a fixed interval (capture mode "frameCommit").
+ * Frames are counted with ViewTreeObserver.registerFrameCommitCallback, re-registered
+ * after every commit; the vsyncs awaitCommit waits for are counted with Choreographer
+ * frame callbacks, which don't make the window draw.
+ *
+ * Commits can only be observed on API 29+ (see isSupported); below that no commit is
+ * ever counted, so every wait ends idle. Thread-safe: commits are counted on the UI
+ * thread, the stability loop waits for them on its own.
+ */
+public final class FrameCommitMonitor {
+    // A frame requested now is drawn on the next vsync and its commit reported before the
+    // third, so a screen that commits nothing for this many vsyncs is idle
+    private static final int IDLE_VSYNCS = 3;
+    // Upper bound on a wait in case vsyncs stop (e.g. the activity went to the background)
+    private static final long MAX_WAIT_MS = 500;
+
+    private final View rootView;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object lock = new Object();
+    // Guarded by lock
+    private long commitCount = 0;
+    private long waitCount = 0;
+    private long idleWaitCount = 0;
+    private volatile boolean stopped = false;
+
+    /**
+     * Returns whether frame commits can be observed on this device.
+     *
+     * @return True on API 29 and above
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= 29;
+    }
+
+    /**
+     * @param rootView Root view of the window whose frames are counted
+     */
+    public FrameCommitMonitor(View rootView) {
+        this.rootView = rootView;
+    }
+
+    /**
+     * Starts counting commits. Must be called on the UI thread.
+     */
+    public void start() {
+        register();
+    }
+
+    /**
+     * Stops counting; the pending commit callback fires once more and is not renewed.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns the number of frames committed since start.
+     *
+     * @return The commit count
+     */
+    public long getCommitCount() {
+        synchronized (lock) {
+            return commitCount;
+        }
+    }
+
+    /**
+     * Waits until a frame is committed after the given count, or until the window has
+     * been idle for IDLE_VSYNCS vsyncs. Must not be called on the UI thread.
+     *
+     * @param since Commit count at the last capture
+     * @return The commit count, equal to since if no frame was committed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public long awaitCommit(long since) throws InterruptedException {
+        final long wait;
+        synchronized (lock) {
+            if (commitCount != since) {
+                return commitCount;
+            }
+            wait = ++waitCount;
+        }
+        mainHandler.post(() -> countVsyncs(IDLE_VSYNCS, wait));
+
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+        synchronized (lock) {
+            while (commitCount == since && idleWaitCount < wait) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                lock.wait(remaining);
+            }
+            return commitCount;
+        }
+    }
+
+    // Re-posts itself on every vsync until `remaining` have passed, then ends the wait
+    private void countVsyncs(final int remaining, final long wait) {
+        if (remaining == 0) {
+            synchronized (lock) {
+                idleWaitCount = Math.max(idleWaitCount, wait);
+                lock.notifyAll();
+            }
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> countVsyncs(remaining - 1, wait));
+    }
+
+    private void register() {
+        // No frame-commit API below API 29; awaitCommit then only counts vsyncs
+        if (stopped || Build.VERSION.SDK_INT < 29) return;
+        ViewTreeObserver observer = rootView.getViewTreeObserver();
+        if (observer == null || !observer.isAlive()) return;
+        // One-shot: renewed from the callback so every frame is counted
+        observer.registerFrameCommitCallback(this::onFrameCommitted);
+    }
+
+    private void onFrameCommitted() {
+        synchronized (lock) {
+            commitCount++;
+            lock.notifyAll();
+        }
+        register();
+    }
+}
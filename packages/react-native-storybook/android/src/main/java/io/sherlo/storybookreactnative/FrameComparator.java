@@ -0,0 +1,425 @@
+package io.sherlo.storybookreactnative;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stateful comparator for a sequence of frames, owned by a single stability loop.
+ * Keeps two pixel buffers across frames: each new frame is decoded into the spare buffer,
+ * compared with the previous frame and then becomes the previous frame itself by swapping
+ * the buffers. Every frame is decoded and hashed row by row exactly once and, once the
+ * buffers are sized, comparisons allocate nothing. Rows whose hashes match the previous
+ * frame are not compared at all, so a blinking caret costs a few rows, not a screen.
+ *
+ * With a scale above 1, frames are box-filtered down by that factor per axis while they
+ * are decoded, so the buffers and every comparison are scale² times smaller. The last two
+ * bitmaps are then kept, for the full-resolution passes (countLastFrames, diffLastFrames)
+ * that confirm or explain the outcome of a check.
+ *
+ * Takes ownership of the frames passed in: they are recycled (or handed back to the frame
+ * pool) once no longer needed, at the latest by release().
+ *
+ * Not thread-safe; use one instance per stability check. The stability loop sets the
+ * reference frame on its worker and then only uses the instance on the compare thread,
+ * release() included, so the handover happens once through the compare handler.
+ */
+public class FrameComparator {
+    private final List<Pixelmatch.Region> ignoreRegions;
+    private final int scale;
+    private final ImageComparator engine;
+    private final BitmapPool framePool;
+    // Built for the current frame size on first use, at the compared and at full resolution
+    private long[] ignoreMask = null;
+    private int maskWidth = -1;
+    private int maskHeight = -1;
+    private long[] fullIgnoreMask = null;
+    private int fullMaskWidth = -1;
+    private int fullMaskHeight = -1;
+
+    // Pixels at the compared resolution; widths and heights are those of the frames
+    private int[] previous = null;
+    private long[] previousRowHashes = null;
+    private int previousWidth = 0;
+    private int previousHeight = 0;
+    private Bitmap previousFrame = null;
+
+    private int[] spare = null;
+    private long[] spareRowHashes = null;
+    private int spareWidth = 0;
+    private int spareHeight = 0;
+    private Bitmap spareFrame = null;
+
+    // Frame rows being box-filtered, scale rows at a time, and the channel sums per compared pixel
+    private int[] strip = null;
+    private int[] channelSums = null;
+
+    /**
+     * Creates a comparator that compares whole frames.
+     */
+    public FrameComparator() {
+        this(Collections.<Pixelmatch.Region>emptyList());
+    }
+
+    /**
+     * Creates a comparator that leaves the given regions out of every comparison,
+     * e.g. a live clock or a looping spinner.
+     *
+     * @param ignoreRegions Areas to ignore, in frame pixels
+     */
+    public FrameComparator(List<Pixelmatch.Region> ignoreRegions) {
+        this(ignoreRegions, 1);
+    }
+
+    /**
+     * Creates a comparator that compares frames downscaled by the given factor per axis.
+     *
+     * @param ignoreRegions Areas to ignore, in frame pixels
+     * @param scale         Downscale factor: 1 (full resolution), 2 or 4
+     */
+    public FrameComparator(List<Pixelmatch.Region> ignoreRegions, int scale) {
+        this(ignoreRegions, scale, new PixelmatchComparator());
+    }
+
+    /**
+     * Creates a comparator that counts differences with the given engine.
+     *
+     * @param ignoreRegions Areas to ignore, in frame pixels
+     * @param scale         Downscale factor: 1 (full resolution), 2 or 4
+     * @param engine        Engine for compareWithPrevious and countLastFrames
+     */
+    public FrameComparator(List<Pixelmatch.Region> ignoreRegions, int scale, ImageComparator engine) {
+        this(ignoreRegions, scale, engine, null);
+    }
+
+    /**
+     * Creates a comparator that hands the frames back to a pool instead of recycling them,
+     * so they can be captured into again.
+     *
+     * @param ignoreRegions Areas to ignore, in frame pixels
+     * @param scale         Downscale factor: 1 (full resolution), 2 or 4
+     * @param engine        Engine for compareWithPrevious and countLastFrames
+     * @param framePool     Pool the frames were acquired from, or null to recycle them
+     */
+    public FrameComparator(List<Pixelmatch.Region> ignoreRegions, int scale, ImageComparator engine,
+            BitmapPool framePool) {
+        this.ignoreRegions = ignoreRegions;
+        this.scale = scale;
+        this.engine = engine;
+        this.framePool = framePool;
+    }
+
+    /**
+     * Stores a frame as the reference for the next comparison, e.g. the first capture.
+     *
+     * @param frame The captured frame
+     */
+    public void setReference(Bitmap frame) {
+        decodeIntoSpare(frame);
+        swap(frame);
+    }
+
+    /**
+     * Compares a frame with the previous one and stores it as the new reference.
+     * Pixels are counted at the compared resolution, see getScale.
+     *
+     * @param frame     The newly captured frame
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences
+     * @param maxDiffs  Number of differing pixels after which counting stops (0 to only detect any difference)
+     * @return The number of pixels that differ beyond the threshold, or maxDiffs + 1 if there are more
+     * @throws IllegalArgumentException if there is no previous frame or it has different dimensions
+     */
+    public int compareWithPrevious(Bitmap frame, double threshold, boolean includeAA, int maxDiffs) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        decodeIntoSpare(frame);
+
+        boolean hasPrevious = previous != null;
+        int lastWidth = previousWidth;
+        int lastHeight = previousHeight;
+        swap(frame);
+
+        if (!hasPrevious || width != lastWidth || height != lastHeight) {
+            throw new IllegalArgumentException("Image sizes do not match. " +
+                    "Image1: " + width + "x" + height +
+                    ", Image2: " + lastWidth + "x" + lastHeight);
+        }
+
+        // After the swap the new frame is in previous and the old one in spare
+        return engine.compare(previous, previousRowHashes, spare, spareRowHashes, ignoreMask, scaled(width),
+                scaled(height), threshold, includeAA, maxDiffs);
+    }
+
+    /**
+     * Counts the pixels in which the last two frames differ at full resolution, with the
+     * engine and arguments of compareWithPrevious, e.g. to confirm a match found on downscaled
+     * frames or to report how far from stable the frames ended up. With pixelmatch on
+     * downscaled frames, the kept bitmaps are compared by the native kernel when possible.
+     *
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences
+     * @param maxDiffs  Number of differing pixels after which counting stops
+     * @return The number of differing pixels, maxDiffs + 1 if there are more, or -1 if there
+     *         are no two frames of the same size
+     */
+    public int countLastFrames(double threshold, boolean includeAA, int maxDiffs) {
+        if (!hasLastFrames()) {
+            return -1;
+        }
+        if (scale == 1) {
+            return engine.compare(previous, previousRowHashes, spare, spareRowHashes, ignoreMask, previousWidth,
+                    previousHeight, threshold, includeAA, maxDiffs);
+        }
+        if (engine instanceof PixelmatchComparator) {
+            // Compare the kept bitmaps in place rather than copying both to the heap
+            int count = NativePixelmatch.pixelmatch(previousFrame, spareFrame, getFullIgnoreMask(), threshold,
+                    includeAA, maxDiffs);
+            if (count != NativePixelmatch.UNSUPPORTED) {
+                return count;
+            }
+        }
+        return engine.compare(getFullPixels(previousFrame), null, getFullPixels(spareFrame), null,
+                getFullIgnoreMask(), previousWidth, previousHeight, threshold, includeAA, maxDiffs);
+    }
+
+    /**
+     * Diffs the last two frames at full resolution with the same arguments as
+     * compareWithPrevious, drawing the diff image and collecting the changed regions (see
+     * Pixelmatch.diff). Meant for the final frames of a failed stability check; always
+     * uses pixelmatch, whatever the engine, so diff images look the same.
+     *
+     * @param threshold Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA If false, ignore anti-aliased pixels when counting differences
+     * @param output    Array of getWidth() * getHeight() pixels to draw the diff into, or null
+     * @return The diff result, or null if there are no two frames of the same size to diff
+     */
+    public Pixelmatch.Result diffLastFrames(double threshold, boolean includeAA, int[] output) {
+        if (!hasLastFrames()) {
+            return null;
+        }
+        if (scale == 1) {
+            return Pixelmatch.diff(previous, spare, ignoreMask, previousWidth, previousHeight, threshold, includeAA,
+                    output);
+        }
+        return Pixelmatch.diff(getFullPixels(previousFrame), getFullPixels(spareFrame), getFullIgnoreMask(),
+                previousWidth, previousHeight, threshold, includeAA, output);
+    }
+
+    /**
+     * Marks the tiles in which the last two frames differ, with the same arguments as
+     * compareWithPrevious (see Pixelmatch.markChangedTiles). Always uses pixelmatch.
+     *
+     * @param threshold    Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA    If false, ignore anti-aliased pixels when counting differences
+     * @param tileSize     Side of a tile in frame pixels, a multiple of getScale()
+     * @param changedTiles Row-major tiles of the frame to mark
+     * @return The number of tiles newly marked, 0 if there are no two frames of the same size
+     */
+    public int markChangedTiles(double threshold, boolean includeAA, int tileSize, boolean[] changedTiles) {
+        if (!hasLastFrames()) {
+            return 0;
+        }
+        // ceil(ceil(width / scale) / (tileSize / scale)) == ceil(width / tileSize), so the tiles line up
+        return Pixelmatch.markChangedTiles(previous, previousRowHashes, spare, spareRowHashes, ignoreMask,
+                scaled(previousWidth), scaled(previousHeight), threshold, includeAA, tileSize / scale, changedTiles);
+    }
+
+    /**
+     * Returns a hash of the last frame that leaves out the ignored regions. Equal frames
+     * have equal fingerprints; frames that differ only within the threshold do not.
+     *
+     * @return The fingerprint, 0 before the first frame
+     */
+    public long getFingerprint() {
+        return previous != null ? Pixelmatch.hashImage(previousRowHashes, scaled(previousHeight)) : 0;
+    }
+
+    /**
+     * Returns the width of the last frame.
+     *
+     * @return The width in pixels, 0 before the first frame
+     */
+    public int getWidth() {
+        return previousWidth;
+    }
+
+    /**
+     * Returns the height of the last frame.
+     *
+     * @return The height in pixels, 0 before the first frame
+     */
+    public int getHeight() {
+        return previousHeight;
+    }
+
+    /**
+     * Returns the factor per axis by which frames are downscaled for compareWithPrevious;
+     * one compared pixel covers up to scale² frame pixels.
+     *
+     * @return 1, 2 or 4
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Recycles (or hands back) the frames kept for full-resolution passes. Call once the
+     * check is over.
+     */
+    public void release() {
+        if (previousFrame != null) {
+            discard(previousFrame);
+            previousFrame = null;
+        }
+        if (spareFrame != null) {
+            discard(spareFrame);
+            spareFrame = null;
+        }
+    }
+
+    private boolean hasLastFrames() {
+        return previous != null && spare != null && previousWidth == spareWidth && previousHeight == spareHeight;
+    }
+
+    private int scaled(int size) {
+        return (size + scale - 1) / scale;
+    }
+
+    private void decodeIntoSpare(Bitmap frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int scaledWidth = scaled(width);
+        int scaledHeight = scaled(height);
+        if (spare == null || spare.length != scaledWidth * scaledHeight) {
+            spare = new int[scaledWidth * scaledHeight];
+        }
+        if (spareRowHashes == null || spareRowHashes.length != scaledHeight) {
+            spareRowHashes = new long[scaledHeight];
+        }
+        if (scaledWidth != maskWidth || scaledHeight != maskHeight) {
+            ignoreMask = ignoreRegions.isEmpty() ? null
+                    : Pixelmatch.createIgnoreMask(scaledWidth, scaledHeight, scaleRegions(ignoreRegions));
+            maskWidth = scaledWidth;
+            maskHeight = scaledHeight;
+        }
+
+        if (scale == 1) {
+            frame.getPixels(spare, 0, width, 0, 0, width, height);
+        } else {
+            downscaleIntoSpare(frame, width, height, scaledWidth);
+        }
+        Pixelmatch.hashRows(spare, ignoreMask, scaledWidth, scaledHeight, spareRowHashes);
+    }
+
+    /**
+     * Box-filters the frame into spare, reading it scale rows at a time, so the frame is
+     * never held at full resolution on the Java heap. Every channel of a compared pixel is
+     * the rounded mean of the frame pixels it covers; blocks on the right and bottom edges
+     * may cover fewer of them.
+     */
+    private void downscaleIntoSpare(Bitmap frame, int width, int height, int scaledWidth) {
+        if (strip == null || strip.length != width * scale) {
+            strip = new int[width * scale];
+        }
+        if (channelSums == null || channelSums.length != 4 * scaledWidth) {
+            channelSums = new int[4 * scaledWidth];
+        }
+
+        for (int y = 0, scaledY = 0; y < height; y += scale, scaledY++) {
+            int rows = Math.min(scale, height - y);
+            frame.getPixels(strip, 0, width, 0, y, width, rows);
+
+            Arrays.fill(channelSums, 0);
+            for (int row = 0; row < rows; row++) {
+                for (int x = 0, i = row * width; x < width; x++, i++) {
+                    int pixel = strip[i];
+                    int sum = 4 * (x / scale);
+                    channelSums[sum] += pixel >>> 24;
+                    channelSums[sum + 1] += (pixel >> 16) & 0xFF;
+                    channelSums[sum + 2] += (pixel >> 8) & 0xFF;
+                    channelSums[sum + 3] += pixel & 0xFF;
+                }
+            }
+
+            for (int scaledX = 0; scaledX < scaledWidth; scaledX++) {
+                int count = rows * Math.min(scale, width - scaledX * scale);
+                int half = count / 2;
+                int sum = 4 * scaledX;
+                spare[scaledY * scaledWidth + scaledX] = ((channelSums[sum] + half) / count) << 24
+                        | ((channelSums[sum + 1] + half) / count) << 16
+                        | ((channelSums[sum + 2] + half) / count) << 8
+                        | ((channelSums[sum + 3] + half) / count);
+            }
+        }
+    }
+
+    // Ignored regions at the compared resolution, grown to every compared pixel they touch
+    private List<Pixelmatch.Region> scaleRegions(List<Pixelmatch.Region> regions) {
+        if (scale == 1) {
+            return regions;
+        }
+        List<Pixelmatch.Region> scaledRegions = new ArrayList<>(regions.size());
+        for (Pixelmatch.Region region : regions) {
+            int x0 = Math.max(region.x, 0) / scale;
+            int y0 = Math.max(region.y, 0) / scale;
+            int x1 = scaled(Math.max(region.x + region.width, 0));
+            int y1 = scaled(Math.max(region.y + region.height, 0));
+            scaledRegions.add(new Pixelmatch.Region(x0, y0, x1 - x0, y1 - y0, (x1 - x0) * (y1 - y0)));
+        }
+        return scaledRegions;
+    }
+
+    private long[] getFullIgnoreMask() {
+        if (previousWidth != fullMaskWidth || previousHeight != fullMaskHeight) {
+            fullIgnoreMask = ignoreRegions.isEmpty() ? null
+                    : Pixelmatch.createIgnoreMask(previousWidth, previousHeight, ignoreRegions);
+            fullMaskWidth = previousWidth;
+            fullMaskHeight = previousHeight;
+        }
+        return fullIgnoreMask;
+    }
+
+    private static int[] getFullPixels(Bitmap frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int[] pixels = new int[width * height];
+        frame.getPixels(pixels, 0, width, 0, 0, width, height);
+        return pixels;
+    }
+
+    private void swap(Bitmap frame) {
+        int[] decoded = spare;
+        spare = previous;
+        previous = decoded;
+        long[] decodedRowHashes = spareRowHashes;
+        spareRowHashes = previousRowHashes;
+        previousRowHashes = decodedRowHashes;
+        spareWidth = previousWidth;
+        spareHeight = previousHeight;
+        previousWidth = frame.getWidth();
+        previousHeight = frame.getHeight();
+
+        if (scale == 1) {
+            // Everything is in the buffers, the bitmap is no longer needed
+            discard(frame);
+            return;
+        }
+        if (spareFrame != null) {
+            discard(spareFrame);
+        }
+        spareFrame = previousFrame;
+        previousFrame = frame;
+    }
+
+    private void discard(Bitmap frame) {
+        if (framePool != null) {
+            framePool.release(frame);
+        } else {
+            frame.recycle();
+        }
+    }
+}
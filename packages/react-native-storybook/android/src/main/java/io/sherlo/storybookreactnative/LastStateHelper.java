@@ -2,7 +2,13 @@ package io.sherlo.storybookreactnative;
 
 import android.util.Log;
 import org.json.JSONObject;
-import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Helper for extracting and processing state information from Sherlo protocol files.
@@ -10,75 +16,45 @@ import android.util.Base64;
  */
 public class LastStateHelper {
     private static final String TAG = "SherloModule:LastStateHelper";
-    private static final String PROTOCOL_FILENAME = "protocol.sherlo";
+    private static final String PROTOCOL_FILENAME = ProtocolIndexHelper.PROTOCOL_FILENAME;
+    private static final int READ_CHUNK_SIZE = 1024;
     
     /**
      * Reads the protocol file and extracts the last state information.
-     * Processes the file to find the most recent relevant protocol entries and
-     * constructs a state object with snapshot and request information.
+     * Seeks straight to the most recent relevant protocol entries using the protocol index,
+     * falling back to a backward scan (which rebuilds the index) when it is missing or stale,
+     * and constructs a state object with snapshot and request information.
      * 
      * @param fileSystemHelper The file system helper for reading the protocol file
      * @return JSONObject containing the extracted state information or an empty JSONObject if not found
      */
     public static JSONObject getLastState(FileSystemHelper fileSystemHelper) {
         try {
-            String protocolContent = null;
-            try {
-                protocolContent = fileSystemHelper.readFile(PROTOCOL_FILENAME);
-            } catch (Exception e) {
-                Log.w(TAG, "Protocol file doesn't exist or is not readable: " + e.getMessage());
-                return new JSONObject();
-            }
-            
-            if (protocolContent == null || protocolContent.trim().isEmpty()) {
-                Log.w(TAG, "Protocol file is empty");
+            File protocolFile = fileSystemHelper.getFile(PROTOCOL_FILENAME);
+            if (!protocolFile.exists()) {
+                Log.w(TAG, "Protocol file doesn't exist");
                 return new JSONObject();
             }
 
-            // Try to decode if base64 encoded
+            LastItems items = null;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(protocolFile, "r");
             try {
-                byte[] decodedBytes = Base64.decode(protocolContent, Base64.DEFAULT);
-                protocolContent = new String(decodedBytes, "UTF-8");
-            } catch (Exception e) {
-                Log.w(TAG, "Protocol is not base64 encoded, trying to parse as plain JSON");
-            }
+                FileChannel channel = randomAccessFile.getChannel();
 
-            String[] responseLines = protocolContent.split("\n");
-            JSONObject ackStart = null;
-            JSONObject lastRequestSnapshot = null;
-            JSONObject startItem = null;  // Variable to store START action
-
-            // Iterate through all lines in reverse order
-            for (int i = responseLines.length - 1; i >= 0; i--) {
-                try {
-                    String line = responseLines[i];
-                    if (line == null || line.trim().isEmpty()) continue;
-
-                    JSONObject responseItem = new JSONObject(line);
-                    String action = responseItem.optString("action", "");
-
-                    if ("ACK_START".equals(action) && ackStart == null) {
-                        ackStart = responseItem;
-                    } else if ("ACK_REQUEST_SNAPSHOT".equals(action) && lastRequestSnapshot == null) {
-                        // Skip end-of-session markers: runner writes ACK_REQUEST_SNAPSHOT { nextSnapshot: null }
-                        // when terminating a story. We only want the latest entry that actually points to a story.
-                        if (!responseItem.has("nextSnapshot") || responseItem.isNull("nextSnapshot")) continue;
-                        lastRequestSnapshot = responseItem;
-                    } else if ("START".equals(action) && startItem == null) {
-                        startItem = responseItem;
-                    }
-
-                    // If we found all items, we can stop searching
-                    if (ackStart != null && lastRequestSnapshot != null && startItem != null) {
-                        break;
-                    }
-                } catch (Exception e) {
-                    // Ignore parse errors for invalid JSON lines
-                    Log.w(TAG, "Error parsing protocol line: " + e.getMessage());
-                    continue;
+                ProtocolIndexHelper.Index index = ProtocolIndexHelper.load(fileSystemHelper);
+                if (index != null) {
+                    items = readIndexedItems(channel, index);
+                }
+                if (items == null) {
+                    items = scanItems(fileSystemHelper, channel);
                 }
+            } finally {
+                randomAccessFile.close();
             }
 
+            JSONObject ackStart = items.ackStart;
+            JSONObject lastRequestSnapshot = items.lastRequestSnapshot;
+
             JSONObject state = new JSONObject();
             if (ackStart != null) {
                 JSONObject nextSnapshot;
@@ -108,4 +84,119 @@ public class LastStateHelper {
             return new JSONObject();
         }
     }
-} 
\ No newline at end of file
+
+    /** The latest protocol items the last state is built from; null when not found. */
+    private static final class LastItems {
+        JSONObject startItem;
+        JSONObject ackStart;
+        JSONObject lastRequestSnapshot;
+    }
+
+    /**
+     * Reads the indexed lines straight from their offsets.
+     *
+     * @return The items, or null if a line at an indexed offset isn't the expected item
+     */
+    private static LastItems readIndexedItems(FileChannel channel, ProtocolIndexHelper.Index index) {
+        try {
+            LastItems items = new LastItems();
+            items.startItem = readItemAt(channel, index.startOffset, "START");
+            items.ackStart = readItemAt(channel, index.ackStartOffset, "ACK_START");
+            items.lastRequestSnapshot = readItemAt(channel, index.ackRequestSnapshotOffset, "ACK_REQUEST_SNAPSHOT");
+            return items;
+        } catch (Exception e) {
+            Log.w(TAG, "Protocol index is stale, scanning protocol: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads and parses the line starting at the given offset.
+     *
+     * @return The parsed item, or null if offset is negative (no such item)
+     * @throws Exception If the line can't be read or isn't the expected item
+     */
+    private static JSONObject readItemAt(FileChannel channel, long offset, String expectedAction) throws Exception {
+        if (offset < 0) {
+            return null;
+        }
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_SIZE);
+        long position = offset;
+        read:
+        while (true) {
+            chunk.clear();
+            int count = channel.read(chunk, position);
+            if (count <= 0) break;
+
+            for (int i = 0; i < count; i++) {
+                if (chunk.get(i) == '\n') {
+                    line.write(chunk.array(), 0, i);
+                    break read;
+                }
+            }
+            line.write(chunk.array(), 0, count);
+            position += count;
+        }
+
+        JSONObject item = new JSONObject(new String(line.toByteArray(), "UTF-8"));
+        if (!expectedAction.equals(ProtocolIndexHelper.getIndexedAction(item))) {
+            throw new IllegalStateException("Expected " + expectedAction + " at offset " + offset);
+        }
+        return item;
+    }
+
+    /**
+     * Iterates through the lines in reverse order, reading the file from the tail so only
+     * the lines after the session's START are ever loaded, and rebuilds the index from
+     * the offsets found.
+     */
+    private static LastItems scanItems(FileSystemHelper fileSystemHelper, FileChannel channel) throws IOException {
+        LastItems items = new LastItems();
+        long startOffset = -1;
+        long ackStartOffset = -1;
+        long ackRequestSnapshotOffset = -1;
+
+        ReverseLineReader reader = new ReverseLineReader(channel, channel.size());
+        // The text after the last newline is not a complete line yet, so it is not indexed
+        reader.readLine();
+        long indexedLength = reader.getLineStart();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                if (line.trim().isEmpty()) continue;
+
+                JSONObject responseItem = new JSONObject(line);
+                String action = ProtocolIndexHelper.getIndexedAction(responseItem);
+
+                if ("ACK_START".equals(action) && items.ackStart == null) {
+                    items.ackStart = responseItem;
+                    ackStartOffset = reader.getLineStart();
+                } else if ("ACK_REQUEST_SNAPSHOT".equals(action) && items.lastRequestSnapshot == null) {
+                    // Only the latest entry that actually points to a story, end-of-session
+                    // markers with a null nextSnapshot are skipped by getIndexedAction
+                    items.lastRequestSnapshot = responseItem;
+                    ackRequestSnapshotOffset = reader.getLineStart();
+                } else if ("START".equals(action) && items.startItem == null) {
+                    items.startItem = responseItem;
+                    startOffset = reader.getLineStart();
+                }
+
+                // If we found all items, we can stop searching
+                if (items.ackStart != null && items.lastRequestSnapshot != null && items.startItem != null) {
+                    break;
+                }
+            } catch (Exception e) {
+                // Ignore parse errors for invalid JSON lines
+                Log.w(TAG, "Error parsing protocol line: " + e.getMessage());
+                continue;
+            }
+        }
+
+        ProtocolIndexHelper.save(fileSystemHelper,
+                new ProtocolIndexHelper.Index(indexedLength, startOffset, ackStartOffset, ackRequestSnapshotOffset));
+        return items;
+    }
+}
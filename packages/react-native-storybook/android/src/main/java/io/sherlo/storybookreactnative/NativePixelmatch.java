@@ -0,0 +1,103 @@
+package io.sherlo.storybookreactnative;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Java bridge to the native pixelmatch kernel in libsherlo.so, which compares two
+ * bitmaps in place (AndroidBitmap_lockPixels) instead of copying them to the Java heap
+ * with Bitmap.getPixels(), and skips identical runs and computes YIQ deltas with
+ * NEON / SSE.
+ *
+ * <p>The count is bit-exact with {@link Pixelmatch}. Whenever the kernel cannot guarantee
+ * that - the library failed to load, a bitmap is not ARGB_8888, or a translucent
+ * premultiplied pixel takes part in the comparison - {@link #UNSUPPORTED} is returned and
+ * callers fall back to the Java implementation.
+ */
+public final class NativePixelmatch {
+
+    private static final String TAG = "SherloModule:NativePixelmatch";
+
+    /** Returned when the comparison has to run in Java instead. */
+    public static final int UNSUPPORTED = -1;
+
+    // -----------------------------------------------------------------
+    // Native library loading
+    // -----------------------------------------------------------------
+
+    private static volatile boolean sLibraryLoaded = false;
+
+    static {
+        try {
+            System.loadLibrary("sherlo");
+            sLibraryLoaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            // Same as SherloJsiReader: every comparison then runs in Java
+            Log.w(TAG, "libsherlo.so not loaded; native pixelmatch disabled: " + e.getMessage());
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // Public API
+    // -----------------------------------------------------------------
+
+    /**
+     * Returns whether the native kernel is available at all.
+     *
+     * @return True if libsherlo.so was loaded
+     */
+    public static boolean isAvailable() {
+        return sLibraryLoaded;
+    }
+
+    /**
+     * Compares two equally sized bitmaps like
+     * {@code Pixelmatch.pixelmatch(pixels1, null, pixels2, null, ignoreMask, ...)} would
+     * compare their pixels. Never throws.
+     *
+     * @param bitmap1    First image
+     * @param bitmap2    Second image
+     * @param ignoreMask Pixels to leave out of the comparison (see Pixelmatch.createIgnoreMask), or null
+     * @param threshold  Matching threshold (0.0 to 1.0); smaller values are more sensitive
+     * @param includeAA  If false, ignore anti-aliased pixels when counting differences
+     * @param maxDiffs   Number of differing pixels after which counting stops
+     * @return The number of differing pixels if it is at most maxDiffs, maxDiffs + 1 otherwise,
+     *         or {@link #UNSUPPORTED}
+     */
+    public static int pixelmatch(Bitmap bitmap1, Bitmap bitmap2, long[] ignoreMask, double threshold,
+            boolean includeAA, int maxDiffs) {
+        if (!sLibraryLoaded || bitmap1 == null || bitmap2 == null) return UNSUPPORTED;
+        if (bitmap1.getConfig() != Bitmap.Config.ARGB_8888 || bitmap2.getConfig() != Bitmap.Config.ARGB_8888) {
+            return UNSUPPORTED;
+        }
+
+        try {
+            // Before API 19 bitmaps are always premultiplied
+            boolean premultiplied = Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                    || bitmap1.isPremultiplied() || bitmap2.isPremultiplied();
+            return nativeCount(bitmap1, bitmap2, ignoreMask, Pixelmatch.maxDelta(threshold), includeAA,
+                    premultiplied, maxDiffs);
+        } catch (Throwable t) {
+            // e.g. an outdated libsherlo.so without the kernel
+            Log.w(TAG, "native pixelmatch failed: " + t.getMessage());
+            return UNSUPPORTED;
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // JNI declaration
+    // -----------------------------------------------------------------
+
+    /**
+     * Counts the differing pixels of two RGBA_8888 bitmaps of the same size, or returns
+     * {@link #UNSUPPORTED}.
+     *
+     * <p>Implemented in {@code SherloPixelmatch.cpp}.
+     */
+    private static native int nativeCount(Bitmap bitmap1, Bitmap bitmap2, long[] ignoreMask, long maxDelta,
+            boolean includeAA, boolean premultiplied, int maxDiffs);
+
+    // Utility class; no instantiation.
+    private NativePixelmatch() {}
+}
@@ -0,0 +1,222 @@
+package io.sherlo.storybookreactnative;
+
+import android.util.Log;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Helper for the sidecar index of protocol.sherlo.
+ * The index is a fixed 40-byte file next to the protocol holding the byte offsets of the
+ * latest START, ACK_START and non-null ACK_REQUEST_SNAPSHOT lines, so the last state can
+ * be restored after a restart by seeking to three lines instead of scanning the file.
+ *
+ * Layout (big-endian): magic (int), version (int), indexed length (long) followed by the
+ * START, ACK_START and ACK_REQUEST_SNAPSHOT offsets (long, -1 when not seen yet).
+ * The indexed length is how many bytes of the protocol the offsets account for; lines
+ * appended after it (e.g. by the runner) are caught up on the next update or load.
+ */
+public class ProtocolIndexHelper {
+    private static final String TAG = "SherloModule:ProtocolIndexHelper";
+    public static final String PROTOCOL_FILENAME = "protocol.sherlo";
+    private static final String INDEX_FILENAME = "protocol.sherlo.idx";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x53484958; // "SHIX"
+    private static final int VERSION = 1;
+    private static final int INDEX_SIZE = 40;
+
+    private static final Object lock = new Object();
+
+    /** Offsets of the indexed protocol lines; -1 when the file has no such line. */
+    public static final class Index {
+        public final long indexedLength;
+        public final long startOffset;
+        public final long ackStartOffset;
+        public final long ackRequestSnapshotOffset;
+
+        public Index(long indexedLength, long startOffset, long ackStartOffset, long ackRequestSnapshotOffset) {
+            this.indexedLength = indexedLength;
+            this.startOffset = startOffset;
+            this.ackStartOffset = ackStartOffset;
+            this.ackRequestSnapshotOffset = ackRequestSnapshotOffset;
+        }
+    }
+
+    private static final Index EMPTY_INDEX = new Index(0, -1, -1, -1);
+
+    /**
+     * Returns which indexed item a protocol item is.
+     *
+     * @param item A parsed protocol line
+     * @return "START", "ACK_START" or "ACK_REQUEST_SNAPSHOT" (only when it points to a story), null otherwise
+     */
+    public static String getIndexedAction(JSONObject item) {
+        String action = item.optString("action", "");
+        if ("START".equals(action) || "ACK_START".equals(action)) {
+            return action;
+        }
+        // Skip end-of-session markers: runner writes ACK_REQUEST_SNAPSHOT { nextSnapshot: null }
+        if ("ACK_REQUEST_SNAPSHOT".equals(action) && item.has("nextSnapshot") && !item.isNull("nextSnapshot")) {
+            return action;
+        }
+        return null;
+    }
+
+    /**
+     * Brings the index up to date with the protocol lines appended since it was written,
+     * creating it if missing. Called on the file writer thread after native protocol
+     * appends, so on restart only the runner's latest lines are left to catch up. Never throws.
+     *
+     * @param fileSystemHelper The file system helper for the sync directory
+     */
+    public static void update(FileSystemHelper fileSystemHelper) {
+        synchronized (lock) {
+            try {
+                Index index = read(fileSystemHelper);
+                catchUp(fileSystemHelper, index != null ? index : EMPTY_INDEX);
+            } catch (Exception e) {
+                Log.w(TAG, "Error updating protocol index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the index caught up with the current protocol file.
+     *
+     * @param fileSystemHelper The file system helper for the sync directory
+     * @return The index, or null if it is missing or doesn't match the protocol file
+     */
+    public static Index load(FileSystemHelper fileSystemHelper) {
+        synchronized (lock) {
+            try {
+                Index index = read(fileSystemHelper);
+                return index != null ? catchUp(fileSystemHelper, index) : null;
+            } catch (Exception e) {
+                Log.w(TAG, "Error loading protocol index: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the index, e.g. after it was rebuilt by a full scan of the protocol.
+     *
+     * @param fileSystemHelper The file system helper for the sync directory
+     * @param index The index to store
+     */
+    public static void save(FileSystemHelper fileSystemHelper, Index index) {
+        synchronized (lock) {
+            try {
+                write(fileSystemHelper, index);
+            } catch (IOException e) {
+                Log.w(TAG, "Error saving protocol index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the index file and validates it against the protocol file length.
+     *
+     * @return The stored index, or null if it is missing, malformed or ahead of the protocol
+     */
+    private static Index read(FileSystemHelper fileSystemHelper) throws IOException {
+        File indexFile = fileSystemHelper.getFile(INDEX_FILENAME);
+        if (indexFile.length() != INDEX_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_SIZE);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "r");
+        try {
+            randomAccessFile.readFully(buffer.array());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        Index index = new Index(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+
+        // A protocol shorter than what was indexed has been truncated or recreated since
+        long protocolLength = fileSystemHelper.getFile(PROTOCOL_FILENAME).length();
+        if (index.indexedLength > protocolLength
+                || index.startOffset >= index.indexedLength
+                || index.ackStartOffset >= index.indexedLength
+                || index.ackRequestSnapshotOffset >= index.indexedLength) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Scans the complete lines appended after the indexed length and stores the result
+     * if anything changed.
+     */
+    private static Index catchUp(FileSystemHelper fileSystemHelper, Index index) throws IOException {
+        FileSystemHelper.TextChunk chunk = fileSystemHelper.readFileFrom(PROTOCOL_FILENAME, index.indexedLength);
+        if (chunk.content.isEmpty()) {
+            return index;
+        }
+
+        long startOffset = index.startOffset;
+        long ackStartOffset = index.ackStartOffset;
+        long ackRequestSnapshotOffset = index.ackRequestSnapshotOffset;
+
+        long offset = index.indexedLength;
+        for (String line : chunk.content.split("\n")) {
+            // Cheap pre-filter, only lines mentioning an indexed action are parsed
+            if (line.contains("START") || line.contains("ACK_REQUEST_SNAPSHOT")) {
+                try {
+                    String action = getIndexedAction(new JSONObject(line));
+                    if ("START".equals(action)) {
+                        startOffset = offset;
+                    } else if ("ACK_START".equals(action)) {
+                        ackStartOffset = offset;
+                    } else if ("ACK_REQUEST_SNAPSHOT".equals(action)) {
+                        ackRequestSnapshotOffset = offset;
+                    }
+                } catch (Exception e) {
+                    // Ignore parse errors for invalid JSON lines
+                }
+            }
+            offset += line.getBytes(UTF_8).length + 1;
+        }
+
+        Index updated = new Index(chunk.cursor, startOffset, ackStartOffset, ackRequestSnapshotOffset);
+        write(fileSystemHelper, updated);
+        return updated;
+    }
+
+    /**
+     * Writes the index to a temporary file and renames it over the old one, so a crash
+     * mid-write never leaves a torn index behind.
+     */
+    private static void write(FileSystemHelper fileSystemHelper, Index index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(index.indexedLength);
+        buffer.putLong(index.startOffset);
+        buffer.putLong(index.ackStartOffset);
+        buffer.putLong(index.ackRequestSnapshotOffset);
+
+        File indexFile = fileSystemHelper.getFile(INDEX_FILENAME);
+        File tempFile = fileSystemHelper.getFile(INDEX_FILENAME + ".tmp");
+        FileOutputStream stream = new FileOutputStream(tempFile);
+        try {
+            stream.write(buffer.array());
+        } finally {
+            stream.close();
+        }
+
+        if (!tempFile.renameTo(indexFile)) {
+            throw new IOException("Could not replace " + indexFile.getPath());
+        }
+    }
+}
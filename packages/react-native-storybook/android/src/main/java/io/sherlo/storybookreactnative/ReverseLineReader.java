@@ -0,0 +1,117 @@
+package io.sherlo.storybookreactnative;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the lines of a file backwards, from a given end offset towards the start.
+ * The file is read in fixed-size chunks with positional reads, so reaching the last
+ * few lines costs the same no matter how long the file is.
+ *
+ * Lines are split on '\n' like String.split, so the first line returned is whatever
+ * follows the last newline (an empty string for a newline-terminated file).
+ * The reader does not own the channel; closing it is up to the caller.
+ */
+public final class ReverseLineReader {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int CHUNK_SIZE = 4096;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final FileChannel channel;
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    // File offset of chunk[0]; chunk[0, index) is not consumed yet
+    private long chunkStart;
+    private int index = 0;
+    private long lineStart;
+    private boolean isDone = false;
+
+    /**
+     * Creates a reader that returns the lines before the given offset, last line first.
+     *
+     * @param channel The channel to read from
+     * @param end Offset right after the last byte to read, usually the file size
+     */
+    public ReverseLineReader(FileChannel channel, long end) {
+        this.channel = channel;
+        this.chunkStart = end;
+        this.lineStart = end;
+    }
+
+    /**
+     * Returns the previous line, without its trailing newline.
+     *
+     * @return The line decoded as UTF-8, or null once the start of the file was passed
+     * @throws IOException If there's an error reading the file
+     */
+    public String readLine() throws IOException {
+        if (isDone) {
+            return null;
+        }
+
+        // Bytes of this line already passed in later chunks, for lines spanning chunks
+        byte[] tail = EMPTY;
+        int lineEnd = index;
+
+        while (true) {
+            for (int i = index - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    lineStart = chunkStart + i + 1;
+                    index = i;
+                    return decode(i + 1, lineEnd, tail);
+                }
+            }
+
+            if (chunkStart == 0) {
+                lineStart = 0;
+                index = 0;
+                isDone = true;
+                return decode(0, lineEnd, tail);
+            }
+
+            tail = prepend(lineEnd, tail);
+            readPreviousChunk();
+            lineEnd = index;
+        }
+    }
+
+    /**
+     * Returns the file offset where the line last returned by readLine starts.
+     *
+     * @return Offset of the first byte of the last line read
+     */
+    public long getLineStart() {
+        return lineStart;
+    }
+
+    private void readPreviousChunk() throws IOException {
+        int size = (int) Math.min(CHUNK_SIZE, chunkStart);
+        chunkStart -= size;
+
+        chunk.clear();
+        chunk.limit(size);
+        while (chunk.hasRemaining() && channel.read(chunk, chunkStart + chunk.position()) > 0) {
+            // keep reading until the chunk is full
+        }
+        index = chunk.position();
+    }
+
+    private byte[] prepend(int length, byte[] tail) {
+        byte[] bytes = new byte[length + tail.length];
+        System.arraycopy(chunk.array(), 0, bytes, 0, length);
+        System.arraycopy(tail, 0, bytes, length, tail.length);
+        return bytes;
+    }
+
+    private String decode(int from, int to, byte[] tail) {
+        if (tail.length == 0) {
+            return new String(chunk.array(), from, to - from, UTF_8);
+        }
+
+        byte[] bytes = new byte[to - from + tail.length];
+        System.arraycopy(chunk.array(), from, bytes, 0, to - from);
+        System.arraycopy(tail, 0, bytes, to - from, tail.length);
+        return new String(bytes, UTF_8);
+    }
+}
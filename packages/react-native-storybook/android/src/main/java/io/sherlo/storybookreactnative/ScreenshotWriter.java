@@ -0,0 +1,139 @@
+package io.sherlo.storybookreactnative;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * Saves the screenshots of a stability check (saveScreenshots) as PNG files on the
+ * shared writer thread, so a full-screen encode (100+ ms) never delays the next capture
+ * and the timing being debugged stays the same as without saving.
+ *
+ * Frames are copied when submitted, since the captured bitmaps go back to the frame pool
+ * and are overwritten. The queue is bounded: when encoding falls behind, the oldest queued
+ * frame is dropped (and logged) rather than holding more full-screen copies in memory.
+ * flush() waits for the queue to drain at the end of a check. Thread-safe.
+ */
+public class ScreenshotWriter {
+    private static final String TAG = "SherloModule:ScreenshotWriter";
+
+    private static final class PendingFrame {
+        final Bitmap frame;
+        final String fileName;
+
+        PendingFrame(Bitmap frame, String fileName) {
+            this.frame = frame;
+            this.fileName = fileName;
+        }
+    }
+
+    private final File directory;
+    private final int capacity;
+    private final ArrayDeque<PendingFrame> queue = new ArrayDeque<>();
+    // Whether the writer thread is draining the queue or about to
+    private boolean draining = false;
+    private int droppedCount = 0;
+
+    /**
+     * @param directory Directory the files are written to; must exist
+     * @param capacity  Number of frames that may wait to be written
+     */
+    public ScreenshotWriter(File directory, int capacity) {
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a copy of the frame to be written. Returns as soon as it is copied.
+     *
+     * @param frame    The frame; still owned by the caller, which may reuse it right away
+     * @param fileName Name of the PNG file in the directory
+     */
+    public void submit(Bitmap frame, String fileName) {
+        Bitmap copy = frame.copy(Bitmap.Config.ARGB_8888, false);
+        if (copy == null) {
+            Log.e(TAG, "Failed to copy screenshot " + fileName);
+            return;
+        }
+
+        PendingFrame dropped = null;
+        synchronized (this) {
+            if (queue.size() >= capacity) {
+                dropped = queue.pollFirst();
+                droppedCount++;
+            }
+            queue.addLast(new PendingFrame(copy, fileName));
+            if (!draining) {
+                draining = true;
+                CaptureExecutor.getWriterHandler().post(this::drain);
+            }
+        }
+        if (dropped != null) {
+            Log.w(TAG, "Writing screenshots fell behind; dropped " + dropped.fileName);
+            dropped.frame.recycle();
+        }
+    }
+
+    /**
+     * Waits until every queued frame has been written.
+     *
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return True if the queue drained in time
+     */
+    public synchronized boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            while (draining) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    Log.w(TAG, queue.size() + " screenshots still queued after " + timeoutMs + "ms");
+                    return false;
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException ignored) {
+            return false;
+        }
+        if (droppedCount > 0) {
+            Log.w(TAG, "Dropped " + droppedCount + " screenshots");
+        }
+        return true;
+    }
+
+    // Runs on the writer thread until the queue is empty
+    private void drain() {
+        while (true) {
+            PendingFrame next;
+            synchronized (this) {
+                next = queue.pollFirst();
+                if (next == null) {
+                    draining = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            write(next);
+        }
+    }
+
+    private void write(PendingFrame pending) {
+        File imageFile = new File(directory, pending.fileName);
+        try {
+            FileOutputStream fos = new FileOutputStream(imageFile);
+            try {
+                pending.frame.compress(Bitmap.CompressFormat.PNG, 100, fos);
+            } finally {
+                fos.close();
+            }
+            Log.d(TAG, "Saved screenshot to: " + imageFile.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save screenshot", e);
+        } finally {
+            pending.frame.recycle();
+        }
+    }
+}
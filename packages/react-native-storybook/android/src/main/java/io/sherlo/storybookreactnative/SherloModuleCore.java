@@ -2,7 +2,9 @@ package io.sherlo.storybookreactnative;
 
 // Android Framework Imports
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.util.Log;
 import android.content.Intent;
 import android.view.View;
@@ -10,6 +12,7 @@ import android.view.View;
 // React Native Bridge Imports
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
 // Java Utility and IO Imports
@@ -54,8 +57,28 @@ public class SherloModuleCore {
 
     // Helper instances
     private FileSystemHelper fileSystemHelper = null;
+    private FileWatchHelper fileWatchHelper = null;
     private RestartHelper restartHelper = null;
 
+    // Writes buffered log lines out when the system trims the app's memory: it may kill
+    // the app next, and the last lines before a kill are the ones worth keeping
+    private Context applicationContext = null;
+    private final ComponentCallbacks2 trimMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            FileAppendHelper.flushPending();
+        }
+
+        @Override
+        public void onLowMemory() {
+            FileAppendHelper.flushPending();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
     /**
      * Emits the early native protocol signals (NATIVE_INIT_STARTED, NATIVE_LOADED) when the
      * Sherlo config indicates testing mode. Idempotent - subsequent calls are no-ops.
@@ -112,6 +135,7 @@ public class SherloModuleCore {
         // Store context before initializeWithInstance() runs so PRE_RUN_JS_BUNDLE_START can retrieve it.
         storeEarlyReactContext(reactContext);
         this.fileSystemHelper = new FileSystemHelper(reactContext);
+        this.fileWatchHelper = new FileWatchHelper(this.fileSystemHelper);
 
         // Fallback - normal Android startup already runs this via SherloInitProvider before
         // Application.onCreate(). The call is idempotent so the double-invocation costs nothing.
@@ -119,6 +143,11 @@ public class SherloModuleCore {
 
         this.restartHelper = new RestartHelper(reactContext);
 
+        this.applicationContext = reactContext.getApplicationContext();
+        if (this.applicationContext != null) {
+            this.applicationContext.registerComponentCallbacks(trimMemoryCallbacks);
+        }
+
         this.nativeVersion = SherloJsonHelper.getNativeVersion(reactContext);
 
         this.config = ConfigHelper.loadConfig(this.fileSystemHelper);
@@ -191,6 +220,20 @@ public class SherloModuleCore {
         return constants;
     }
 
+    /**
+     * Releases what the module keeps across calls, when React Native tears the module
+     * down (e.g. on reload). Stops the shared capture threads and the file watcher, and
+     * writes out buffered log lines.
+     */
+    public void invalidate() {
+        CaptureExecutor.shutdown();
+        fileWatchHelper.shutdown();
+        if (applicationContext != null) {
+            applicationContext.unregisterComponentCallbacks(trimMemoryCallbacks);
+        }
+        FileAppendHelper.flushPending();
+    }
+
     /**
      * Toggles between Storybook and default modes.
      * If currently in Storybook mode, switches to default, otherwise switches to Storybook.
@@ -290,6 +333,72 @@ public class SherloModuleCore {
         fileSystemHelper.readFileWithPromise(filename, promise);
     }
 
+    /**
+     * Appends UTF-8 text to a file.
+     *
+     * @param filename The name of the file to append to
+     * @param content The text to append
+     * @param promise Promise to resolve or reject
+     */
+    public void appendText(String filename, String content, Promise promise) {
+        fileSystemHelper.appendTextWithPromise(filename, content, promise);
+    }
+
+    /**
+     * Writes out the appends queued so far, e.g. after a log line the runner waits for.
+     *
+     * @param filename The name of the file whose appends must be written
+     * @param promise Promise to resolve or reject
+     */
+    public void flushFile(String filename, Promise promise) {
+        fileSystemHelper.flushFileWithPromise(filename, promise);
+    }
+
+    /**
+     * Reads a file and returns its content as UTF-8 text.
+     *
+     * @param filename The name of the file to read
+     * @param promise Promise to resolve with the content or reject with an error
+     */
+    public void readText(String filename, Promise promise) {
+        fileSystemHelper.readTextWithPromise(filename, promise);
+    }
+
+    /**
+     * Reads the complete lines appended to a file after the given byte offset.
+     *
+     * @param filename The name of the file to read
+     * @param cursor Byte offset returned by the previous read
+     * @param promise Promise to resolve with {content, cursor} or reject with an error
+     */
+    public void readFileFrom(String filename, double cursor, Promise promise) {
+        fileSystemHelper.readFileFromWithPromise(filename, cursor, promise);
+    }
+
+    /**
+     * Reads the last complete lines of a file.
+     *
+     * @param filename The name of the file to read
+     * @param lineCount The maximum number of lines to return
+     * @param promise Promise to resolve with {content, cursor} or reject with an error
+     */
+    public void tailLines(String filename, int lineCount, Promise promise) {
+        fileSystemHelper.tailLinesWithPromise(filename, lineCount, promise);
+    }
+
+    /**
+     * Waits for complete lines appended to a file after the given byte offset.
+     * Resolves with empty content if nothing was appended within timeoutMs.
+     *
+     * @param filename The name of the file to watch
+     * @param cursor Byte offset returned by the previous read
+     * @param timeoutMs Maximum time to wait for new lines (ms)
+     * @param promise Promise to resolve with {content, cursor} or reject with an error
+     */
+    public void awaitFileAppend(String filename, double cursor, int timeoutMs, Promise promise) {
+        fileWatchHelper.awaitFileAppend(filename, cursor, timeoutMs, promise);
+    }
+
     /**
      * Gets UI inspector data from the current view hierarchy.
      * 
@@ -317,6 +426,17 @@ public class SherloModuleCore {
         StabilityHelper.stabilize(activity, requiredMatches, minScreenshotsCount, intervalMs, timeoutMs, saveScreenshots, threshold, includeAA, promise);
     }
 
+    /**
+     * Checks if the UI is stable, with the parameters passed as an options object.
+     *
+     * @param activity The current activity
+     * @param options The options object from JS (see StabilityOptions for the keys)
+     * @param promise Promise to resolve with the stability result or reject with an error
+     */
+    public void stabilizeWithOptions(Activity activity, ReadableMap options, Promise promise) {
+        StabilityHelper.stabilizeWithOptions(activity, StabilityOptions.fromMap(options), promise);
+    }
+
     /**
      * Native paint barrier: force a redraw and resolve on the next
      * real frame commit, capped at timeoutMs.
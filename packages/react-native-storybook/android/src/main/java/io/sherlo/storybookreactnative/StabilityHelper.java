@@ -4,9 +4,9 @@ import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
@@ -17,7 +17,15 @@ import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.view.inputmethod.InputMethodManager;
 
+import com.facebook.react.R;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -25,9 +33,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,9 +50,50 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class StabilityHelper {
     private static final String TAG = "SherloModule:StabilityHelper";
+    private static final int MAX_LOGGED_REGIONS = 10;
+    // The frame being captured, the one being compared and the two a downscaling
+    // FrameComparator keeps
+    private static final int FRAME_POOL_SIZE = 4;
+
+    // Saved screenshots that may wait for the writer thread
+    private static final int SCREENSHOT_QUEUE_SIZE = 4;
+    // Cap on how long the end of a check waits for saved screenshots to be written
+    private static final long SCREENSHOT_FLUSH_TIMEOUT_MS = 5000;
+
+    // Bitmaps the frames of the current check are captured into, null outside of a check
+    private volatile BitmapPool framePool = null;
+    // Writes the screenshots of the current check with saveScreenshots, null otherwise
+    private volatile ScreenshotWriter screenshotWriter = null;
+
+    /** Outcome of a stability check. */
+    public static final class Result {
+        public final boolean isStable;
+        // Areas that kept animating while the rest of the screen was stable, empty unless
+        // the check stopped early because of them
+        public final List<Pixelmatch.Region> animatedRegions;
+        // Period in frames of the looping animation the check stopped early on, 0 if none
+        public final int cyclePeriod;
+        // Differing pixels between the last two frames and their share of the frame,
+        // -1 if no two frames could be compared
+        public final int diffPixels;
+        public final double diffRatio;
+
+        public Result(boolean isStable, List<Pixelmatch.Region> animatedRegions, int cyclePeriod, int diffPixels,
+                double diffRatio) {
+            this.isStable = isStable;
+            this.animatedRegions = animatedRegions;
+            this.cyclePeriod = cyclePeriod;
+            this.diffPixels = diffPixels;
+            this.diffRatio = diffRatio;
+        }
+
+        public Result(boolean isStable) {
+            this(isStable, Collections.<Pixelmatch.Region>emptyList(), 0, -1, -1);
+        }
+    }
 
     public interface StabilityCallback {
-        void onResult(boolean isStable);
+        void onResult(Result result);
     }
 
     /**
@@ -66,13 +119,59 @@ public class StabilityHelper {
     public static void stabilize(Activity activity, int requiredMatches, int minScreenshotsCount, int intervalMs,
             int timeoutMs, boolean saveScreenshots, double threshold, boolean includeAA, Promise promise) {
         StabilityHelper helper = new StabilityHelper();
-        helper.checkIfStable(activity, requiredMatches, minScreenshotsCount, intervalMs, timeoutMs, saveScreenshots,
-                threshold, includeAA, new StabilityCallback() {
-                    @Override
-                    public void onResult(boolean isStable) {
-                        promise.resolve(isStable);
+        StabilityOptions options = new StabilityOptions(requiredMatches, minScreenshotsCount, intervalMs, timeoutMs,
+                saveScreenshots, threshold, includeAA);
+        helper.checkIfStable(activity, options, new StabilityCallback() {
+            @Override
+            public void onResult(Result result) {
+                promise.resolve(result.isStable);
+            }
+        });
+    }
+
+    /**
+     * Checks if the UI is stable like stabilize, with the parameters passed as an options
+     * object so optional ones (e.g. ignoreRegions) can be added without changing the
+     * bridge signature.
+     *
+     * @param activity The current activity to check for stability
+     * @param options  The stability parameters
+     * @param promise  Promise to resolve with a map: {isStable: boolean, animatedRegions?:
+     *                 [{x, y, width, height}], cyclePeriod?: number, diffPixels?: number,
+     *                 diffRatio?: number}, where animatedRegions and cyclePeriod are only set
+     *                 when the check stopped early because of endlessly animating regions or
+     *                 a looping animation, and diffPixels / diffRatio measure how much the
+     *                 last two frames differed
+     */
+    public static void stabilizeWithOptions(Activity activity, StabilityOptions options, Promise promise) {
+        StabilityHelper helper = new StabilityHelper();
+        helper.checkIfStable(activity, options, new StabilityCallback() {
+            @Override
+            public void onResult(Result stability) {
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("isStable", stability.isStable);
+                if (!stability.animatedRegions.isEmpty()) {
+                    WritableArray regions = Arguments.createArray();
+                    for (Pixelmatch.Region region : stability.animatedRegions) {
+                        WritableMap item = Arguments.createMap();
+                        item.putInt("x", region.x);
+                        item.putInt("y", region.y);
+                        item.putInt("width", region.width);
+                        item.putInt("height", region.height);
+                        regions.pushMap(item);
                     }
-                });
+                    result.putArray("animatedRegions", regions);
+                }
+                if (stability.cyclePeriod > 0) {
+                    result.putInt("cyclePeriod", stability.cyclePeriod);
+                }
+                if (stability.diffPixels >= 0) {
+                    result.putInt("diffPixels", stability.diffPixels);
+                    result.putDouble("diffRatio", stability.diffRatio);
+                }
+                promise.resolve(result);
+            }
+        });
     }
 
     /**
@@ -151,8 +250,21 @@ public class StabilityHelper {
      * Captures a screenshot of the activity's root view.
      * This must NOT block the UI thread; it performs UI nudges on the main thread
      * but waits on a background thread.
+     * During a stability check the screenshot is rendered into a bitmap from the
+     * check's frame pool, which the frame comparator hands back once compared.
      */
     public Bitmap captureScreenshot(Activity activity, boolean saveToFile, int screenshotNumber) {
+        return captureScreenshot(activity, saveToFile, screenshotNumber, true);
+    }
+
+    /**
+     * Captures a screenshot like captureScreenshot(activity, saveToFile, screenshotNumber),
+     * optionally without the pre-capture nudge. The nudge redraws the window, so it is
+     * skipped when the capture follows a frame the window committed on its own.
+     *
+     * @param nudge Whether to redraw the window and wait two vsyncs before copying it
+     */
+    public Bitmap captureScreenshot(Activity activity, boolean saveToFile, int screenshotNumber, boolean nudge) {
         final View rootView = activity.getWindow().getDecorView().getRootView();
         final int width = rootView.getWidth();
         final int height = rootView.getHeight();
@@ -168,66 +280,81 @@ public class StabilityHelper {
 
         // 1) PRE-CAPTURE NUDGE: on UI thread, rebuild layer + invalidate + wait 2
         // vsyncs
-        final CountDownLatch readyForCopy = new CountDownLatch(1);
-        runOnUiThread(activity, () -> {
-            try {
-                // Toggle layer type to rebuild hardware layer safely
-                int lt = rootView.getLayerType();
-                rootView.setLayerType(View.LAYER_TYPE_NONE, null);
-                rootView.setLayerType(lt, null);
+        final CountDownLatch readyForCopy = new CountDownLatch(nudge ? 1 : 0);
+        if (nudge) {
+            runOnUiThread(activity, () -> {
+                try {
+                    // Toggle layer type to rebuild hardware layer safely
+                    int lt = rootView.getLayerType();
+                    rootView.setLayerType(View.LAYER_TYPE_NONE, null);
+                    rootView.setLayerType(lt, null);
 
-                // Schedule a redraw next frame
-                rootView.postInvalidateOnAnimation();
+                    // Schedule a redraw next frame
+                    rootView.postInvalidateOnAnimation();
 
-                // Wait two frames to ensure fresh content is rendered
-                Choreographer.getInstance().postFrameCallback(
-                        ft -> Choreographer.getInstance().postFrameCallback(ft2 -> readyForCopy.countDown()));
-            } catch (Throwable t) {
-                Log.w(TAG, "Pre-capture nudge failed", t);
-                readyForCopy.countDown();
-            }
-        });
+                    // Wait two frames to ensure fresh content is rendered
+                    Choreographer.getInstance().postFrameCallback(
+                            ft -> Choreographer.getInstance().postFrameCallback(ft2 -> readyForCopy.countDown()));
+                } catch (Throwable t) {
+                    Log.w(TAG, "Pre-capture nudge failed", t);
+                    readyForCopy.countDown();
+                }
+            });
+        }
         try {
             readyForCopy.await(500, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ignored) {
         }
 
-        // 2) Allocate destination bitmap
-        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        // 2) Take the destination bitmap from the pool (PixelCopy overwrites all of it)
+        final BitmapPool pool = framePool;
+        final Bitmap copyTarget = acquireFrame(pool, width, height);
+        Bitmap bitmap = copyTarget;
 
         // 3) PixelCopy from the Window using a background handler for the callback
         final CountDownLatch pixelCopyLatch = new CountDownLatch(1);
         final AtomicInteger resultHolder = new AtomicInteger(-1);
+        // Set by whichever comes first: the copy callback, or this thread giving up on it
+        final AtomicBoolean copySettled = new AtomicBoolean(false);
+        boolean copyTimedOut = false;
 
-        // Use a dedicated handler thread for PixelCopy callbacks
-        HandlerThread ht = new HandlerThread("SherloPixelCopy");
-        ht.start();
-        Handler copyHandler = new Handler(ht.getLooper());
+        // PixelCopy callbacks arrive on the shared capture looper thread
+        Handler copyHandler = CaptureExecutor.getCopyHandler();
 
         try {
-            PixelCopy.request(activity.getWindow(), bitmap, copyResult -> {
+            PixelCopy.request(activity.getWindow(), copyTarget, copyResult -> {
                 resultHolder.set(copyResult);
+                if (!copySettled.compareAndSet(false, true)) {
+                    // Late copy into an abandoned bitmap: nothing reads it any more
+                    releaseFrame(pool, copyTarget);
+                    return;
+                }
                 pixelCopyLatch.countDown();
             }, copyHandler);
 
             // Wait up to 1s for the copy to finish
-            if (!pixelCopyLatch.await(1000, TimeUnit.MILLISECONDS)) {
+            if (!pixelCopyLatch.await(1000, TimeUnit.MILLISECONDS)
+                    && copySettled.compareAndSet(false, true)) {
+                copyTimedOut = true;
                 Log.d(TAG, "PixelCopy timeout; will fall back to View#draw");
             }
         } catch (Throwable t) {
             Log.w(TAG, "PixelCopy threw; will fall back to View#draw", t);
-        } finally {
-            try {
-                ht.quitSafely();
-            } catch (Throwable ignored) {
-            }
         }
 
         // 4) Fallback: draw the view hierarchy if copy failed or returned no data
         if (resultHolder.get() != PixelCopy.SUCCESS) {
+            if (copyTimedOut) {
+                // The copy may still land in its bitmap later; leave that one to it so it
+                // never overwrites a reused frame. Its callback hands the bitmap back.
+                bitmap = acquireFrame(pool, width, height);
+            }
+            // A pooled bitmap still holds an older frame
+            bitmap.eraseColor(Color.TRANSPARENT);
+            final Bitmap target = bitmap;
             runOnUiThread(activity, () -> {
                 try {
-                    Canvas canvas = new Canvas(bitmap);
+                    Canvas canvas = new Canvas(target);
                     rootView.draw(canvas);
                 } catch (Throwable t) {
                     Log.e(TAG, "Error while drawing canvas fallback", t);
@@ -243,21 +370,39 @@ public class StabilityHelper {
         return bitmap;
     }
 
+    private static Bitmap acquireFrame(BitmapPool pool, int width, int height) {
+        return pool != null ? pool.acquire(width, height)
+                : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    // Hands a frame back to the pool it came from, which recycles it once closed
+    private static void releaseFrame(BitmapPool pool, Bitmap frame) {
+        if (pool != null) {
+            pool.release(frame);
+        } else {
+            frame.recycle();
+        }
+    }
+
     /**
-     * Saves a bitmap to a file in the app's external files directory.
+     * Saves a bitmap to a file in the app's external files directory. During a stability
+     * check the file is written in the background by the check's screenshot writer.
      */
     private void saveBitmapToFile(Context context, Bitmap bitmap, int screenshotNumber) {
+        // File named with the capture time
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+        String fileName = timestamp + "_screenshot_" + screenshotNumber + ".png";
+
+        ScreenshotWriter writer = screenshotWriter;
+        if (writer != null) {
+            writer.submit(bitmap, fileName);
+            return;
+        }
+
         try {
             // Create directory if it doesn't exist
-            File externalDirectory = context.getExternalFilesDir(null);
-            File storageDir = new File(externalDirectory.getAbsolutePath() + "/sherlo/stabilization_screenshots");
-            if (!storageDir.exists()) {
-                storageDir.mkdirs();
-            }
-
-            // Create file with timestamp
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
-            File imageFile = new File(storageDir, timestamp + "_screenshot_" + screenshotNumber + ".png");
+            File storageDir = getStabilizationScreenshotsDir(context);
+            File imageFile = new File(storageDir, fileName);
 
             // Save bitmap to file
             FileOutputStream fos = new FileOutputStream(imageFile);
@@ -270,72 +415,273 @@ public class StabilityHelper {
         }
     }
 
+    /**
+     * Diffs the last two frames of a failed stability check and logs the regions that
+     * kept changing. With saveScreenshots, also saves the diff image and the regions next
+     * to the stabilization screenshots, to see (and mask) what never settled.
+     */
+    private void reportChangedRegions(Context context, FrameComparator comparator, double threshold,
+            boolean includeAA, boolean saveScreenshots, int screenshotNumber) {
+        try {
+            int width = comparator.getWidth();
+            int height = comparator.getHeight();
+            int[] output = saveScreenshots ? new int[width * height] : null;
+            Pixelmatch.Result result = comparator.diffLastFrames(threshold, includeAA, output);
+            if (result == null) {
+                return;
+            }
+
+            Log.d(TAG, "Last frames differ in " + result.diffCount + " pixels, " + result.regions.size()
+                    + " regions: " + result.regions.subList(0, Math.min(result.regions.size(), MAX_LOGGED_REGIONS)));
+
+            if (saveScreenshots) {
+                saveDiffToFile(context, output, width, height, result, screenshotNumber);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to diff last frames", t);
+        }
+    }
+
+    /**
+     * Saves a diff image and its changed regions as JSON ({diffCount, regions: [{x, y,
+     * width, height, pixelCount}]}) in the stabilization screenshots directory.
+     */
+    private void saveDiffToFile(Context context, int[] output, int width, int height, Pixelmatch.Result result,
+            int screenshotNumber) {
+        Bitmap diff = Bitmap.createBitmap(output, width, height, Bitmap.Config.ARGB_8888);
+        try {
+            File storageDir = getStabilizationScreenshotsDir(context);
+            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+
+            File imageFile = new File(storageDir, timestamp + "_diff_" + screenshotNumber + ".png");
+            FileOutputStream fos = new FileOutputStream(imageFile);
+            try {
+                diff.compress(Bitmap.CompressFormat.PNG, 100, fos);
+            } finally {
+                fos.close();
+            }
+
+            JSONArray regions = new JSONArray();
+            for (Pixelmatch.Region region : result.regions) {
+                JSONObject item = new JSONObject();
+                item.put("x", region.x);
+                item.put("y", region.y);
+                item.put("width", region.width);
+                item.put("height", region.height);
+                item.put("pixelCount", region.pixelCount);
+                regions.put(item);
+            }
+            JSONObject json = new JSONObject();
+            json.put("diffCount", result.diffCount);
+            json.put("regions", regions);
+
+            File regionsFile = new File(storageDir, timestamp + "_diff_" + screenshotNumber + ".json");
+            fos = new FileOutputStream(regionsFile);
+            try {
+                fos.write(json.toString().getBytes("UTF-8"));
+            } finally {
+                fos.close();
+            }
+
+            Log.d(TAG, "Saved diff to: " + imageFile.getAbsolutePath());
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to save diff", e);
+        } finally {
+            diff.recycle();
+        }
+    }
+
+    private static File getStabilizationScreenshotsDir(Context context) {
+        File externalDirectory = context.getExternalFilesDir(null);
+        File storageDir = new File(externalDirectory.getAbsolutePath() + "/sherlo/stabilization_screenshots");
+        if (!storageDir.exists()) {
+            storageDir.mkdirs();
+        }
+        return storageDir;
+    }
+
     /**
      * Checks for UI stability by comparing consecutive screenshots.
      *
-     * @param requiredMatches     The number of consecutive matching screenshots
-     *                            needed.
-     * @param minScreenshotsCount The minimum number of screenshots to take when
-     *                            checking for stability.
-     * @param intervalMs          The interval between each screenshot (in
-     *                            milliseconds).
-     * @param timeoutMs           The overall timeout (in milliseconds).
-     * @param saveScreenshots     Whether to save screenshots to filesystem during
-     *                            tests
-     * @param threshold           Matching threshold (0.0 to 1.0); smaller values
-     *                            are more sensitive
-     * @param includeAA           If false, ignore anti-aliased pixels when counting
-     *                            differences
-     * @param callback            Callback with the result: true if stable, false
-     *                            otherwise.
+     * @param activity The activity to capture
+     * @param options  The stability parameters (matches, interval, timeout, threshold,
+     *                 ignored regions, ...)
+     * @param callback Callback with the result
      */
-    public void checkIfStable(final Activity activity, final int requiredMatches, final int minScreenshotsCount,
-            final int intervalMs, final int timeoutMs, boolean saveScreenshots, double threshold, boolean includeAA,
+    public void checkIfStable(final Activity activity, final StabilityOptions options,
             final StabilityCallback callback) {
-        final Handler mainHandler = new Handler(Looper.getMainLooper());
-        final HandlerThread captureThread = new HandlerThread("SherloStabilityLoop");
-        captureThread.start();
-        final Handler captureHandler = new Handler(captureThread.getLooper());
+        final int requiredMatches = options.requiredMatches;
+        final int minScreenshotsCount = options.minScreenshotsCount;
+        final int intervalMs = options.intervalMs;
+        final int timeoutMs = options.timeoutMs;
+        final boolean saveScreenshots = options.saveScreenshots;
+        final double threshold = options.threshold;
+        final boolean includeAA = options.includeAA;
+
+        // Captures run on the shared stability worker, one loop step per message, and
+        // comparisons on the compare thread, so frame N+1 is captured while frame N is compared
+        final Handler captureHandler = CaptureExecutor.getWorkerHandler();
+        final Handler compareHandler = CaptureExecutor.getCompareHandler();
+        // Held while a frame waits for or undergoes comparison
+        final Semaphore comparePermit = new Semaphore(1);
+        final AtomicBoolean finished = new AtomicBoolean(false);
 
-        final Bitmap[] lastScreenshot = new Bitmap[1];
         final AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
         final AtomicInteger consecutiveMatches = new AtomicInteger(0);
         final AtomicInteger screenshotCounter = new AtomicInteger(0);
+        final BitmapPool pool = new BitmapPool(FRAME_POOL_SIZE);
+        framePool = pool;
+        final ScreenshotWriter writer = saveScreenshots
+                ? new ScreenshotWriter(getStabilizationScreenshotsDir(activity), SCREENSHOT_QUEUE_SIZE)
+                : null;
+        screenshotWriter = writer;
+        // Counts drawn frames in frameCommit mode, null when capturing every intervalMs
+        final FrameCommitMonitor commitMonitor = createCommitMonitor(activity, options);
 
         // Initial capture on background thread
         captureHandler.post(() -> {
-            lastScreenshot[0] = captureScreenshot(activity, saveScreenshots, screenshotCounter.getAndIncrement());
+            // Keeps the previous frame's pixels and recycles the screenshots once they are not needed
+            final ImageComparator engine = options.createImageComparator();
+            Log.d(TAG, "Comparing frames with " + engine.getName() + " (cost: " + engine.getCost() + ")");
+            final FrameComparator comparator = new FrameComparator(
+                    resolveIgnoreRegions(activity, options.ignoreRegions), options.downscale, engine, pool);
+            // Learns which tiles keep changing, to stop early on unmasked endless animations
+            final AnimatedRegionTracker animatedRegionTracker = options.detectAnimatedRegions
+                    ? new AnimatedRegionTracker(requiredMatches, options.maxAnimatedAreaRatio)
+                    : null;
+            // Remembers recent frame fingerprints, to stop early on looping animations
+            final CycleDetector cycleDetector = options.detectCycles ? new CycleDetector(requiredMatches) : null;
+
+            Bitmap first = captureScreenshot(activity, saveScreenshots, screenshotCounter.getAndIncrement());
+            comparator.setReference(first);
+            final long firstCommitCount = commitMonitor != null ? commitMonitor.getCommitCount() : 0;
 
             Runnable loop = new Runnable() {
+                // Compare thread only: full-resolution differences of the latest comparison if
+                // known exactly, -1 if not
+                private int lastDiffPixels = -1;
+                private boolean hasCompared = false;
+                // Worker only: frames the window had committed when the latest frame was captured
+                private long seenCommitCount = firstCommitCount;
+
+                // Capture step, on the stability worker
                 @Override
                 public void run() {
+                    if (finished.get()) return;
                     try {
-                        Bitmap current = captureScreenshot(activity, saveScreenshots,
-                                screenshotCounter.incrementAndGet());
-                        long elapsedTime = System.currentTimeMillis() - startTime.get();
+                        // In frameCommit mode, a frame is only captured once the window drew one
+                        boolean frameCommitted = true;
+                        if (commitMonitor != null) {
+                            long commitCount = commitMonitor.awaitCommit(seenCommitCount);
+                            frameCommitted = commitCount != seenCommitCount;
+                            seenCommitCount = commitCount;
+                        }
+                        final int screenshotNumber = frameCommitted ? screenshotCounter.incrementAndGet()
+                                : screenshotCounter.get();
+                        final Bitmap current = frameCommitted ? captureScreenshot(activity, saveScreenshots,
+                                screenshotNumber, commitMonitor == null) : null;
+
+                        // Hand the frame over once the previous one has been compared, so frames
+                        // are compared in capture order and at most one is in flight
+                        comparePermit.acquire();
+                        if (finished.get()) {
+                            comparePermit.release();
+                            pool.release(current);
+                            return;
+                        }
+                        compareHandler.post(() -> compare(current, screenshotNumber));
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Stability loop error", t);
+                        compareHandler.post(() -> finish(new Result(false)));
+                        return;
+                    }
 
-                        try {
-                            int differentPixels = Pixelmatch.pixelmatch(current, lastScreenshot[0], threshold,
-                                    includeAA);
-                            boolean imagesMatch = (differentPixels == 0);
+                    // Capture the next frame while this one is compared; in frameCommit mode the
+                    // next step waits for a frame
+                    if (commitMonitor != null) {
+                        captureHandler.post(this);
+                    } else {
+                        captureHandler.postDelayed(this, Math.max(intervalMs, 1));
+                    }
+                }
 
-                            if (imagesMatch) {
-                                int n = consecutiveMatches.incrementAndGet();
-                                Log.d(TAG, "Consecutive match number: " + n);
-                            } else {
-                                Log.d(TAG, "No consecutive match - " + differentPixels + " different pixels");
+                // Compare step, on the compare thread; current is null if no frame was drawn
+                private void compare(Bitmap current, int screenshotNumber) {
+                    try {
+                        if (finished.get()) {
+                            pool.release(current);
+                            return;
+                        }
+                        long elapsedTime = System.currentTimeMillis() - startTime.get();
+                        boolean onlyAnimatedRegionsChange = false;
+
+                        if (current == null) {
+                            // Nothing was drawn since the latest frame, so the screen still shows it
+                            int n = consecutiveMatches.incrementAndGet();
+                            Log.d(TAG, "No frame committed - consecutive match number: " + n);
+                            if (hasCompared) {
+                                lastDiffPixels = 0;
+                            }
+                            if (animatedRegionTracker != null) {
+                                animatedRegionTracker.beginComparison(comparator.getWidth(), comparator.getHeight());
+                                onlyAnimatedRegionsChange = animatedRegionTracker.record();
+                            }
+                        } else {
+                            try {
+                                // Only a match matters, so stop counting once the budget is exceeded. A
+                                // downscaled pixel stands for up to scale² frame pixels.
+                                int scale = comparator.getScale();
+                                int fullDiffBudget = options.getDiffBudget(current.getWidth() * current.getHeight());
+                                int diffBudget = fullDiffBudget / (scale * scale);
+                                int differentPixels = comparator.compareWithPrevious(current, threshold, includeAA,
+                                        diffBudget);
+                                boolean imagesMatch = differentPixels <= diffBudget;
+                                hasCompared = true;
+                                lastDiffPixels = scale == 1 && imagesMatch ? differentPixels : -1;
+
+                                if (imagesMatch && scale > 1
+                                        && consecutiveMatches.get() + 1 >= requiredMatches) {
+                                    // The match that would end the check is confirmed at full resolution
+                                    int fullDifferentPixels = comparator.countLastFrames(threshold, includeAA,
+                                            fullDiffBudget);
+                                    imagesMatch = fullDifferentPixels <= fullDiffBudget;
+                                    lastDiffPixels = imagesMatch ? fullDifferentPixels : -1;
+                                    if (!imagesMatch) {
+                                        Log.d(TAG, "Downscaled match not confirmed at full resolution");
+                                    }
+                                }
+
+                                if (imagesMatch) {
+                                    int n = consecutiveMatches.incrementAndGet();
+                                    Log.d(TAG, "Consecutive match number: " + n);
+                                } else {
+                                    Log.d(TAG, "No consecutive match - screenshots differ");
+                                    consecutiveMatches.set(0);
+                                }
+
+                                if (animatedRegionTracker != null) {
+                                    boolean[] changedTiles = animatedRegionTracker.beginComparison(
+                                            comparator.getWidth(), comparator.getHeight());
+                                    if (!imagesMatch) {
+                                        comparator.markChangedTiles(threshold, includeAA,
+                                                AnimatedRegionTracker.TILE_SIZE, changedTiles);
+                                    }
+                                    onlyAnimatedRegionsChange = animatedRegionTracker.record();
+                                }
+                            } catch (IllegalArgumentException e) {
+                                Log.d(TAG, "Bitmaps have different dimensions: " + e.getMessage());
                                 consecutiveMatches.set(0);
+                                hasCompared = false;
+                                if (animatedRegionTracker != null) {
+                                    animatedRegionTracker.reset();
+                                }
                             }
-                        } catch (IllegalArgumentException e) {
-                            Log.d(TAG, "Bitmaps have different dimensions: " + e.getMessage());
-                            consecutiveMatches.set(0);
                         }
 
-                        // Recycle previous screenshot to free memory
-                        if (lastScreenshot[0] != null && !lastScreenshot[0].isRecycled()) {
-                            lastScreenshot[0].recycle();
+                        int cyclePeriod = 0;
+                        if (cycleDetector != null) {
+                            cyclePeriod = cycleDetector.add(comparator.getFingerprint());
                         }
-                        lastScreenshot[0] = current;
 
                         // Clear focus / IME on UI thread; if it changed, reset timers and counters
                         boolean[] foundFocus = new boolean[] { false };
@@ -344,45 +690,193 @@ public class StabilityHelper {
                             Log.d(TAG, "Found and cleared focus");
                             startTime.set(System.currentTimeMillis());
                             consecutiveMatches.set(0);
+                            if (animatedRegionTracker != null) {
+                                animatedRegionTracker.reset();
+                                onlyAnimatedRegionsChange = false;
+                            }
+                            if (cycleDetector != null) {
+                                cycleDetector.reset();
+                                cyclePeriod = 0;
+                            }
                         }
 
                         if (consecutiveMatches.get() >= requiredMatches) {
                             Log.d(TAG, "UI is stable");
-                            finish(true);
+                            finish(true, Collections.<Pixelmatch.Region>emptyList(), 0);
                             return;
                         }
 
-                        if (elapsedTime >= timeoutMs && consecutiveMatches.get() == 0
-                                && screenshotCounter.get() >= minScreenshotsCount) {
-                            Log.d(TAG, "UI is not stable - timeout with no matches");
-                            finish(false);
+                        if (onlyAnimatedRegionsChange) {
+                            List<Pixelmatch.Region> animatedRegions = animatedRegionTracker.getRegions();
+                            Log.d(TAG, "UI is stable except animated regions: " + animatedRegions);
+                            reportChangedRegions(activity, comparator, threshold, includeAA, saveScreenshots,
+                                    screenshotNumber);
+                            finish(false, animatedRegions, 0);
                             return;
                         }
 
-                        // Schedule next iteration
-                        captureHandler.postDelayed(this, Math.max(intervalMs, 1));
+                        if (cyclePeriod > 0) {
+                            // Stop on the canonical frame, which comes around within one period
+                            if (comparator.getFingerprint() == cycleDetector.getCanonicalFingerprint(cyclePeriod)) {
+                                Log.d(TAG, "UI is cycling with period " + cyclePeriod);
+                                finish(false, Collections.<Pixelmatch.Region>emptyList(), cyclePeriod);
+                                return;
+                            }
+                            Log.d(TAG, "UI is cycling with period " + cyclePeriod
+                                    + ", waiting for the canonical frame");
+                        }
+
+                        if (elapsedTime >= timeoutMs && consecutiveMatches.get() == 0
+                                && screenshotNumber >= minScreenshotsCount) {
+                            Log.d(TAG, "UI is not stable - timeout with no matches");
+                            reportChangedRegions(activity, comparator, threshold, includeAA, saveScreenshots,
+                                    screenshotNumber);
+                            finish(false, Collections.<Pixelmatch.Region>emptyList(), 0);
+                        }
                     } catch (Throwable t) {
                         Log.e(TAG, "Stability loop error", t);
-                        finish(false);
+                        finish(new Result(false));
+                    } finally {
+                        comparePermit.release();
                     }
                 }
 
-                private void finish(boolean result) {
-                    try {
-                        callback.onResult(result);
-                    } finally {
-                        try {
-                            captureThread.quitSafely();
-                        } catch (Throwable ignored) {
-                        }
+                private void finish(boolean isStable, List<Pixelmatch.Region> animatedRegions, int cyclePeriod) {
+                    int diffPixels = lastDiffPixels;
+                    if (hasCompared && diffPixels < 0) {
+                        // The comparison stopped counting over budget or was downscaled; report
+                        // the full difference
+                        diffPixels = comparator.countLastFrames(threshold, includeAA, Integer.MAX_VALUE);
                     }
+                    int pixelCount = comparator.getWidth() * comparator.getHeight();
+                    double diffRatio = diffPixels >= 0 && pixelCount > 0 ? (double) diffPixels / pixelCount : -1;
+                    Log.d(TAG, "Last frames differ in " + diffPixels + " pixels");
+                    finish(new Result(isStable, animatedRegions, cyclePeriod, diffPixels, diffRatio));
+                }
+
+                // Ends the check once; the capture step stops at its next turn and hands a frame
+                // still in flight back to the pool
+                private void finish(Result result) {
+                    if (!finished.compareAndSet(false, true)) {
+                        return;
+                    }
+                    if (commitMonitor != null) {
+                        commitMonitor.stop();
+                    }
+                    comparator.release();
+                    Log.d(TAG, "Captured " + (screenshotCounter.get() + 1) + " frames into "
+                            + pool.getAllocationCount() + " bitmaps");
+                    framePool = null;
+                    pool.close();
+                    if (writer != null) {
+                        // The saved screenshots are complete once the check is
+                        writer.flush(SCREENSHOT_FLUSH_TIMEOUT_MS);
+                    }
+                    callback.onResult(result);
                 }
             };
 
-            captureHandler.postDelayed(loop, Math.max(intervalMs, 1));
+            if (commitMonitor != null) {
+                captureHandler.post(loop);
+            } else {
+                captureHandler.postDelayed(loop, Math.max(intervalMs, 1));
+            }
         });
     }
 
+    /**
+     * Starts counting the frames the window commits if the options capture on frame
+     * commits. Below API 29 frame commits cannot be observed and frames are captured
+     * every intervalMs instead.
+     *
+     * @return The started monitor, or null to capture every intervalMs
+     */
+    private static FrameCommitMonitor createCommitMonitor(Activity activity, StabilityOptions options) {
+        if (!options.capturesOnFrameCommit()) {
+            return null;
+        }
+        if (!FrameCommitMonitor.isSupported()) {
+            Log.d(TAG, "Frame commits need API 29; capturing every " + options.intervalMs + "ms instead");
+            return null;
+        }
+        final FrameCommitMonitor monitor = new FrameCommitMonitor(activity.getWindow().getDecorView().getRootView());
+        runOnUiThread(activity, monitor::start);
+        return monitor;
+    }
+
+    /**
+     * Turns the ignored regions of the options into rectangles in screenshot pixels.
+     * Views referenced by testID or nativeID are looked up on the UI thread; every
+     * matching view is ignored, and IDs that match nothing are logged and skipped.
+     *
+     * @param activity The activity whose views are searched
+     * @param regions  The regions from the stability options
+     * @return The rectangles to ignore
+     */
+    private static List<Pixelmatch.Region> resolveIgnoreRegions(Activity activity,
+            List<StabilityOptions.IgnoreRegion> regions) {
+        final List<Pixelmatch.Region> rects = new ArrayList<>();
+        final List<StabilityOptions.IgnoreRegion> viewRegions = new ArrayList<>();
+        for (StabilityOptions.IgnoreRegion region : regions) {
+            if (region.rect != null) {
+                rects.add(region.rect);
+            } else {
+                viewRegions.add(region);
+            }
+        }
+
+        if (!viewRegions.isEmpty()) {
+            final List<Pixelmatch.Region> viewRects = new ArrayList<>();
+            runOnUiThread(activity, () -> {
+                View root = activity.getWindow().getDecorView().getRootView();
+                for (StabilityOptions.IgnoreRegion region : viewRegions) {
+                    int found = findViewRects(root, region, viewRects);
+                    if (found == 0) {
+                        Log.d(TAG, "No view found for ignored region: testID=" + region.testID
+                                + ", nativeID=" + region.nativeID);
+                    }
+                }
+            });
+            synchronized (viewRects) {
+                rects.addAll(viewRects);
+            }
+        }
+
+        if (!rects.isEmpty()) {
+            Log.d(TAG, "Ignoring regions: " + rects);
+        }
+        return rects;
+    }
+
+    /**
+     * Adds the window bounds of every view in the hierarchy matching the region's testID
+     * or nativeID.
+     *
+     * @return The number of matching views
+     */
+    private static int findViewRects(View view, StabilityOptions.IgnoreRegion region, List<Pixelmatch.Region> rects) {
+        int found = 0;
+        boolean matches = (region.testID != null && region.testID.equals(view.getTag(R.id.react_test_id)))
+                || (region.nativeID != null && region.nativeID.equals(view.getTag(R.id.view_tag_native_id)));
+        if (matches && view.getWidth() > 0 && view.getHeight() > 0) {
+            int[] location = new int[2];
+            view.getLocationInWindow(location);
+            synchronized (rects) {
+                rects.add(new Pixelmatch.Region(location[0], location[1], view.getWidth(), view.getHeight(),
+                        view.getWidth() * view.getHeight()));
+            }
+            found++;
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                found += findViewRects(group.getChildAt(i), region, rects);
+            }
+        }
+        return found;
+    }
+
     /**
      * Helps ensure UI stability by removing any blinking cursors or focus
      * highlights.
@@ -0,0 +1,208 @@
+package io.sherlo.storybookreactnative;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters of a stability check, as passed from JS to stabilizeWithOptions.
+ * Every key is optional on the JS side; missing keys fall back to the defaults below,
+ * so newer options can be added without breaking older callers.
+ */
+public final class StabilityOptions {
+    private static final int DEFAULT_REQUIRED_MATCHES = 3;
+    private static final int DEFAULT_MIN_SCREENSHOTS_COUNT = 3;
+    private static final int DEFAULT_INTERVAL_MS = 500;
+    private static final int DEFAULT_TIMEOUT_MS = 5000;
+    private static final double DEFAULT_THRESHOLD = 0.0;
+    private static final double DEFAULT_MAX_ANIMATED_AREA_RATIO = 0.1;
+
+    public static final String CAPTURE_MODE_INTERVAL = "interval";
+    public static final String CAPTURE_MODE_FRAME_COMMIT = "frameCommit";
+
+    /**
+     * An area left out of the comparison: either a rectangle in window pixels (the
+     * coordinates of the captured screenshot) or the bounds of a view found by its
+     * React Native testID or nativeID.
+     */
+    public static final class IgnoreRegion {
+        public final Pixelmatch.Region rect;
+        public final String testID;
+        public final String nativeID;
+
+        public IgnoreRegion(Pixelmatch.Region rect, String testID, String nativeID) {
+            this.rect = rect;
+            this.testID = testID;
+            this.nativeID = nativeID;
+        }
+    }
+
+    public final int requiredMatches;
+    public final int minScreenshotsCount;
+    public final int intervalMs;
+    public final int timeoutMs;
+    public final boolean saveScreenshots;
+    public final double threshold;
+    public final boolean includeAA;
+    // Frames still match with up to max(maxDiffPixels, maxDiffRatio * frame pixels) differences
+    public final int maxDiffPixels;
+    public final double maxDiffRatio;
+    // Factor per axis frames are downscaled by for counting matches: 1, 2 or 4
+    public final int downscale;
+    // Engine counting the differences: "pixelmatch", "exact" or "ssim", see ImageComparator
+    public final String comparator;
+    public final List<IgnoreRegion> ignoreRegions;
+    // Stop early when only a small area keeps animating, see AnimatedRegionTracker
+    public final boolean detectAnimatedRegions;
+    public final double maxAnimatedAreaRatio;
+    // Stop early on looping animations, see CycleDetector
+    public final boolean detectCycles;
+    // When to capture: every intervalMs ("interval") or after each drawn frame ("frameCommit")
+    public final String captureMode;
+
+    /**
+     * Creates options with the parameters of the positional stabilize method and
+     * defaults for everything else.
+     */
+    public StabilityOptions(int requiredMatches, int minScreenshotsCount, int intervalMs, int timeoutMs,
+            boolean saveScreenshots, double threshold, boolean includeAA) {
+        this.requiredMatches = requiredMatches;
+        this.minScreenshotsCount = minScreenshotsCount;
+        this.intervalMs = intervalMs;
+        this.timeoutMs = timeoutMs;
+        this.saveScreenshots = saveScreenshots;
+        this.threshold = threshold;
+        this.includeAA = includeAA;
+        this.maxDiffPixels = 0;
+        this.maxDiffRatio = 0.0;
+        this.downscale = 1;
+        this.comparator = PixelmatchComparator.NAME;
+        this.ignoreRegions = Collections.emptyList();
+        this.detectAnimatedRegions = false;
+        this.maxAnimatedAreaRatio = DEFAULT_MAX_ANIMATED_AREA_RATIO;
+        this.detectCycles = false;
+        this.captureMode = CAPTURE_MODE_INTERVAL;
+    }
+
+    private StabilityOptions(ReadableMap map) {
+        this.requiredMatches = getInt(map, "requiredMatches", DEFAULT_REQUIRED_MATCHES);
+        this.minScreenshotsCount = getInt(map, "minScreenshotsCount", DEFAULT_MIN_SCREENSHOTS_COUNT);
+        this.intervalMs = getInt(map, "intervalMs", DEFAULT_INTERVAL_MS);
+        this.timeoutMs = getInt(map, "timeoutMs", DEFAULT_TIMEOUT_MS);
+        this.saveScreenshots = getBoolean(map, "saveScreenshots", false);
+        this.threshold = getDouble(map, "threshold", DEFAULT_THRESHOLD);
+        this.includeAA = getBoolean(map, "includeAA", true);
+        this.maxDiffPixels = getInt(map, "maxDiffPixels", 0);
+        this.maxDiffRatio = getDouble(map, "maxDiffRatio", 0.0);
+        this.downscale = toSupportedDownscale(getInt(map, "downscale", 1));
+        String comparator = map != null ? getString(map, "comparator") : null;
+        this.comparator = comparator != null ? comparator : PixelmatchComparator.NAME;
+        this.ignoreRegions = getIgnoreRegions(map);
+        this.detectAnimatedRegions = getBoolean(map, "detectAnimatedRegions", false);
+        this.maxAnimatedAreaRatio = getDouble(map, "maxAnimatedAreaRatio", DEFAULT_MAX_ANIMATED_AREA_RATIO);
+        this.detectCycles = getBoolean(map, "detectCycles", false);
+        String captureMode = map != null ? getString(map, "captureMode") : null;
+        this.captureMode = CAPTURE_MODE_FRAME_COMMIT.equals(captureMode) ? CAPTURE_MODE_FRAME_COMMIT
+                : CAPTURE_MODE_INTERVAL;
+    }
+
+    /**
+     * Returns how many differing pixels two frames of the given size may have and still
+     * count as a match.
+     *
+     * @param pixelCount Width times height of the frames
+     * @return The larger of maxDiffPixels and maxDiffRatio of the frame, at least 0
+     */
+    public int getDiffBudget(int pixelCount) {
+        return Math.max(0, Math.max(maxDiffPixels, (int) Math.floor(maxDiffRatio * pixelCount)));
+    }
+
+    /**
+     * Returns whether frames are captured after each drawn frame instead of every intervalMs.
+     *
+     * @return True for captureMode "frameCommit"
+     */
+    public boolean capturesOnFrameCommit() {
+        return CAPTURE_MODE_FRAME_COMMIT.equals(captureMode);
+    }
+
+    /**
+     * Creates the engine selected by the comparator option.
+     *
+     * @return The engine, pixelmatch for unknown names
+     */
+    public ImageComparator createImageComparator() {
+        if (ExactHashComparator.NAME.equals(comparator)) {
+            return new ExactHashComparator();
+        }
+        if (SsimComparator.NAME.equals(comparator)) {
+            return new SsimComparator();
+        }
+        return new PixelmatchComparator();
+    }
+
+    /**
+     * Reads options from the map passed to stabilizeWithOptions.
+     *
+     * @param map The options object from JS, may be null
+     * @return The options, with defaults for missing keys
+     */
+    public static StabilityOptions fromMap(ReadableMap map) {
+        return new StabilityOptions(map);
+    }
+
+    /**
+     * Parses ignoreRegions: [{x, y, width, height} | {testID} | {nativeID}].
+     * Entries that are none of these are skipped.
+     */
+    private static List<IgnoreRegion> getIgnoreRegions(ReadableMap map) {
+        if (map == null || !map.hasKey("ignoreRegions") || map.isNull("ignoreRegions")) {
+            return Collections.emptyList();
+        }
+
+        ReadableArray array = map.getArray("ignoreRegions");
+        List<IgnoreRegion> regions = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            ReadableMap item = array.getMap(i);
+            if (item == null) continue;
+
+            String testID = getString(item, "testID");
+            String nativeID = getString(item, "nativeID");
+            if (testID != null || nativeID != null) {
+                regions.add(new IgnoreRegion(null, testID, nativeID));
+            } else if (item.hasKey("width") && item.hasKey("height")) {
+                int width = getInt(item, "width", 0);
+                int height = getInt(item, "height", 0);
+                Pixelmatch.Region rect = new Pixelmatch.Region(getInt(item, "x", 0), getInt(item, "y", 0),
+                        width, height, width * height);
+                regions.add(new IgnoreRegion(rect, null, null));
+            }
+        }
+        return Collections.unmodifiableList(regions);
+    }
+
+    // Powers of two keep the tiles of AnimatedRegionTracker aligned with compared pixels
+    private static int toSupportedDownscale(int downscale) {
+        return downscale >= 4 ? 4 : downscale >= 2 ? 2 : 1;
+    }
+
+    private static int getInt(ReadableMap map, String key, int defaultValue) {
+        // JS numbers arrive as doubles; getInt would throw on fractional values
+        return map != null && map.hasKey(key) && !map.isNull(key) ? (int) map.getDouble(key) : defaultValue;
+    }
+
+    private static double getDouble(ReadableMap map, String key, double defaultValue) {
+        return map != null && map.hasKey(key) && !map.isNull(key) ? map.getDouble(key) : defaultValue;
+    }
+
+    private static boolean getBoolean(ReadableMap map, String key, boolean defaultValue) {
+        return map != null && map.hasKey(key) && !map.isNull(key) ? map.getBoolean(key) : defaultValue;
+    }
+
+    private static String getString(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+    }
+}
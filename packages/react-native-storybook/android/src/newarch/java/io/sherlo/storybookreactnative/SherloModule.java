@@ -7,6 +7,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 
 // Java Utility and IO Imports
@@ -54,6 +55,15 @@ public class SherloModule extends NativeSherloModuleSpec {
         return moduleCore.getSherloConstants();
     }
 
+    /**
+     * Tears down the core implementation when React Native invalidates the module.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        moduleCore.invalidate();
+    }
+
     // ==== Storybook Methods ====
 
     /**
@@ -126,6 +136,78 @@ public class SherloModule extends NativeSherloModuleSpec {
         moduleCore.readFile(filename, promise);
     }
 
+    /**
+     * Appends UTF-8 text to a file, without the base64 encoding of appendFile.
+     *
+     * @param filename The name of the file to append to
+     * @param content The text to append
+     * @param promise Promise to resolve when the operation is complete
+     */
+    @Override
+    public void appendText(String filename, String content, Promise promise) {
+        moduleCore.appendText(filename, content, promise);
+    }
+
+    /**
+     * Writes out the appends queued so far and resolves once they are on disk. Log lines are
+     * otherwise written in batches, so JS calls this after the ones the runner waits for.
+     *
+     * @param filename The name of the file whose appends must be written
+     * @param promise Promise to resolve when the operation is complete
+     */
+    @Override
+    public void flushFile(String filename, Promise promise) {
+        moduleCore.flushFile(filename, promise);
+    }
+
+    /**
+     * Reads a file and returns its content as UTF-8 text, without the base64 encoding of readFile.
+     *
+     * @param filename The name of the file to read
+     * @param promise Promise to resolve with the file content
+     */
+    @Override
+    public void readText(String filename, Promise promise) {
+        moduleCore.readText(filename, promise);
+    }
+
+    /**
+     * Reads the complete lines appended to a file after the given byte offset.
+     *
+     * @param filename The name of the file to read
+     * @param cursor Byte offset returned by the previous read (0 to read from the start)
+     * @param promise Promise to resolve with {content, cursor}
+     */
+    @Override
+    public void readFileFrom(String filename, double cursor, Promise promise) {
+        moduleCore.readFileFrom(filename, cursor, promise);
+    }
+
+    /**
+     * Reads the last complete lines of a file.
+     *
+     * @param filename The name of the file to read
+     * @param lineCount The maximum number of lines to return
+     * @param promise Promise to resolve with {content, cursor}
+     */
+    @Override
+    public void tailLines(String filename, double lineCount, Promise promise) {
+        moduleCore.tailLines(filename, (int)lineCount, promise);
+    }
+
+    /**
+     * Waits for complete lines appended to a file after the given byte offset.
+     *
+     * @param filename The name of the file to watch
+     * @param cursor Byte offset returned by the previous read
+     * @param timeoutMs Maximum time to wait for new lines (ms); resolves with empty content on timeout
+     * @param promise Promise to resolve with {content, cursor}
+     */
+    @Override
+    public void awaitFileAppend(String filename, double cursor, double timeoutMs, Promise promise) {
+        moduleCore.awaitFileAppend(filename, cursor, (int)timeoutMs, promise);
+    }
+
     // ==== Inspector Methods ====
 
     /**
@@ -157,6 +239,21 @@ public class SherloModule extends NativeSherloModuleSpec {
         moduleCore.stabilize(activity, (int)requiredMatches, (int)minScreenshotsCount, (int)intervalMs, (int)timeoutMs, saveScreenshots, threshold, includeAA, promise);
     }
 
+    /**
+     * Checks if the UI is stable, with the parameters passed as an options object.
+     * StabilityOptions defines the keys (requiredMatches, intervalMs, threshold, comparator,
+     * captureMode, ...) and the defaults that missing keys fall back to.
+     *
+     * @param options The stability options, see StabilityOptions
+     * @param promise Promise to resolve with the stability result: {isStable, animatedRegions?,
+     *                cyclePeriod?, diffPixels?, diffRatio?}, see StabilityHelper.stabilizeWithOptions
+     */
+    @Override
+    public void stabilizeWithOptions(ReadableMap options, Promise promise) {
+        Activity activity = getCurrentActivity();
+        moduleCore.stabilizeWithOptions(activity, options, promise);
+    }
+
     /**
      * Native paint barrier: resolves once a real frame is committed,
      * or false if timeoutMs elapses first.
@@ -2,8 +2,8 @@ import base64 from 'base-64';
 import { NativeModules } from 'react-native';
 import utf8 from 'utf8';
 import isExpoGo from './helpers/isExpoGo';
-import { StorybookViewMode, InspectorData } from './types/types';
-import { Config, LastState } from './helpers/RunnerBridge/types';
+import { StorybookViewMode, InspectorData, StabilizationIgnoreRegion } from './types/types';
+import { Config, LastState, StabilityRegion } from './helpers/RunnerBridge/types';
 import TurboModule, { Spec } from './specs/NativeSherloModule';
 
 interface SherloConstants {
@@ -13,6 +13,35 @@ interface SherloConstants {
   nativeVersion: string | null;
 }
 
+/**
+ * Complete lines read from a file plus the byte offset right after them,
+ * to be passed as the cursor of the next readFileFrom call.
+ */
+export type FileChunk = { content: string; cursor: number };
+
+/**
+ * Parameters of a stability check: the runner's stabilization config plus the
+ * per-story options.
+ */
+export type StabilizeOptions = Config['stabilization'] & {
+  ignoreRegions?: StabilizationIgnoreRegion[];
+};
+
+/**
+ * Outcome of a stability check. animatedRegions and cyclePeriod are only set when the check
+ * stopped early because nothing but those areas kept changing
+ * (stabilization.detectAnimatedRegions) or the screen kept looping through the same frames
+ * (stabilization.detectCycles). diffPixels and diffRatio tell how much the last two
+ * screenshots differed; they are missing when the native module doesn't report them.
+ */
+export type StabilityResult = {
+  isStable: boolean;
+  animatedRegions?: StabilityRegion[];
+  cyclePeriod?: number;
+  diffPixels?: number;
+  diffRatio?: number;
+};
+
 type SherloModule = {
   isTurboModule: boolean;
   getMode: () => StorybookViewMode;
@@ -27,6 +56,10 @@ type SherloModule = {
   getInspectorData: () => Promise<InspectorData>;
   appendFile: (path: string, base64: string) => Promise<void>;
   readFile: (path: string) => Promise<string>;
+  flushFile: (path: string) => Promise<void>;
+  readFileFrom: (path: string, cursor: number) => Promise<FileChunk>;
+  tailLines: (path: string, lineCount: number) => Promise<FileChunk>;
+  awaitFileAppend: (path: string, cursor: number, timeoutMs: number) => Promise<FileChunk>;
   openStorybook: () => void;
   toggleStorybook: () => void;
   stabilize: (
@@ -38,6 +71,7 @@ type SherloModule = {
     threshold: number,
     includeAA: boolean
   ) => Promise<boolean>;
+  stabilizeWithOptions: (options: StabilizeOptions) => Promise<StabilityResult>;
   awaitFrameCommit: (timeoutMs: number) => Promise<boolean>;
   isScrollable: () => Promise<{
     scrollable: boolean;
@@ -111,6 +145,23 @@ function createSherloModule(): SherloModule {
         includeAA
       );
     },
+    stabilizeWithOptions: async (options: StabilizeOptions) => {
+      if (typeof module.stabilizeWithOptions === 'function') {
+        return module.stabilizeWithOptions(options);
+      }
+
+      // Older native binaries (and iOS): positional stabilize, without the newer options
+      const isStable = await module.stabilize(
+        options.requiredMatches,
+        options.minScreenshotsCount,
+        options.intervalMs,
+        options.timeoutMs,
+        !!options.saveScreenshots,
+        options.threshold,
+        options.includeAA
+      );
+      return { isStable };
+    },
     awaitFrameCommit: async (timeoutMs: number) => {
       // Graceful degradation: an OLD native binary paired with this newer JS may
       // not expose awaitFrameCommit. Treat its absence as "no barrier available"
@@ -149,14 +200,64 @@ function createSherloModule(): SherloModule {
       return parsedLastState;
     },
     appendFile: (filename: string, data: string) => {
+      if (typeof module.appendText === 'function') {
+        return module.appendText(filename, data);
+      }
+
       const encodedData = base64.encode(utf8.encode(data));
       const result = module.appendFile(filename, encodedData);
       return result;
     },
     readFile: (filename: string) => {
+      if (typeof module.readText === 'function') {
+        return module.readText(filename);
+      }
+
       const decodeData = (data: string) => utf8.decode(base64.decode(data));
       return module.readFile(filename).then(decodeData);
     },
+    flushFile: async (filename: string) => {
+      if (typeof module.flushFile === 'function') {
+        return module.flushFile(filename);
+      }
+    },
+    readFileFrom: async (filename: string, cursor: number) => {
+      if (typeof module.readFileFrom === 'function') {
+        return module.readFileFrom(filename, cursor);
+      }
+
+      // Older native binaries: read the whole file and slice it in JS. base64.decode
+      // yields one char per byte, so the cursor stays a byte offset like on native.
+      const bytes = await readFileBytes(filename);
+      const start = cursor >= 0 && cursor <= bytes.length ? cursor : 0;
+      const end = bytes.lastIndexOf('\n') + 1;
+      if (end <= start) return { content: '', cursor: start };
+      return { content: utf8.decode(bytes.slice(start, end)), cursor: end };
+    },
+    tailLines: async (filename: string, lineCount: number) => {
+      if (typeof module.tailLines === 'function') {
+        return module.tailLines(filename, lineCount);
+      }
+
+      const bytes = await readFileBytes(filename);
+      const end = bytes.lastIndexOf('\n') + 1;
+      let start = end;
+      for (let i = 0; i < lineCount && start > 0; i++) {
+        start = start > 1 ? bytes.lastIndexOf('\n', start - 2) + 1 : 0;
+      }
+      return { content: utf8.decode(bytes.slice(start, end)), cursor: end };
+    },
+    awaitFileAppend: async (filename: string, cursor: number, timeoutMs: number) => {
+      if (typeof module.awaitFileAppend === 'function') {
+        return module.awaitFileAppend(filename, cursor, timeoutMs);
+      }
+
+      // No native file watching: check once now and once more after the timeout
+      const chunk = await sherloModule.readFileFrom(filename, cursor);
+      if (chunk.content) return chunk;
+      await new Promise((resolve) => setTimeout(resolve, timeoutMs));
+      return sherloModule.readFileFrom(filename, cursor);
+    },
     openStorybook: () => module.openStorybook(),
     toggleStorybook: () => module.toggleStorybook(),
     isScrollable: () => module.isScrollable(),
@@ -172,6 +273,11 @@ function createSherloModule(): SherloModule {
   return sherloModule;
 }
 
+async function readFileBytes(filename: string): Promise<string> {
+  const data = await module.readFile(filename).catch(() => '');
+  return base64.decode(data);
+}
+
 function createDummySherloModule(): SherloModule {
   return {
     isTurboModule: false,
@@ -214,6 +320,10 @@ function createDummySherloModule(): SherloModule {
     }),
     appendFile: async () => {},
     readFile: async () => '',
+    flushFile: async () => {},
+    readFileFrom: async (_path: string, cursor: number) => ({ content: '', cursor }),
+    tailLines: async () => ({ content: '', cursor: 0 }),
+    awaitFileAppend: async (_path: string, cursor: number) => ({ content: '', cursor }),
     openStorybook: () => {},
     toggleStorybook: () => {},
     awaitFrameCommit: async () => false,
@@ -235,5 +345,6 @@ function createDummySherloModule(): SherloModule {
       _threshold: number,
       _includeAA: boolean
     ) => true,
+    stabilizeWithOptions: async () => ({ isStable: true }),
   };
 }
@@ -47,6 +47,20 @@ describe('SherloModule dummy (no native module)', () => {
     await expect(SherloModule.readFile('foo.txt')).resolves.toBe('');
   });
 
+  it('readFileFrom() resolves with no new content at the same cursor', async () => {
+    await expect(SherloModule.readFileFrom('foo.txt', 42)).resolves.toEqual({
+      content: '',
+      cursor: 42,
+    });
+  });
+
+  it('awaitFileAppend() resolves with no new content at the same cursor', async () => {
+    await expect(SherloModule.awaitFileAppend('foo.txt', 42, 500)).resolves.toEqual({
+      content: '',
+      cursor: 42,
+    });
+  });
+
   it('openStorybook() does not throw', () => {
     expect(() => SherloModule.openStorybook()).not.toThrow();
   });
@@ -70,6 +84,12 @@ describe('SherloModule dummy (no native module)', () => {
     expect(result).toBe(true);
   });
 
+  it('stabilizeWithOptions() resolves as stable', async () => {
+    const config = SherloModule.getConfig();
+    const result = await SherloModule.stabilizeWithOptions(config.stabilization);
+    expect(result).toEqual({ isStable: true });
+  });
+
   it('notifyGetStorybookCalled() does not throw', () => {
     expect(() => SherloModule.notifyGetStorybookCalled()).not.toThrow();
   });
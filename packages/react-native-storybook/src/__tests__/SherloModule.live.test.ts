@@ -1,8 +1,11 @@
 /**
  * Tests for the live SherloModule wrapper (createSherloModule).
  * Mocks the underlying TurboModule (NativeSherloModule spec) and asserts:
- *  - appendFile base64-encodes the content before calling native
- *  - readFile base64-decodes the native return value
+ *  - appendFile/readFile pass text through appendText/readText when native has them
+ *  - otherwise appendFile base64-encodes the content and readFile base64-decodes the result
+ *  - flushFile delegates to native, or resolves right away on binaries that write every append
+ *  - readFileFrom/tailLines/awaitFileAppend delegate to native, or emulate it via readFile on older binaries
+ *  - stabilizeWithOptions delegates to native, or falls back to positional stabilize
  *  - getMode/getConfig/getLastState delegate to getConstants()
  *  - constants merge correctly across new-arch (getSherloConstants) and old-arch (getConstants)
  */
@@ -15,9 +18,16 @@ const {
   mockGetConstants,
   mockAppendFile,
   mockReadFile,
+  mockAppendText,
+  mockReadText,
+  mockFlushFile,
+  mockReadFileFrom,
+  mockTailLines,
+  mockAwaitFileAppend,
   mockSendNativeError,
   mockGetInspectorData,
   mockStabilize,
+  mockStabilizeWithOptions,
   mockIsScrollable,
   mockScrollToCheckpoint,
 } = vi.hoisted(() => ({
@@ -25,9 +35,16 @@ const {
   mockGetConstants: vi.fn(),
   mockAppendFile: vi.fn(),
   mockReadFile: vi.fn(),
+  mockAppendText: vi.fn(),
+  mockReadText: vi.fn(),
+  mockFlushFile: vi.fn(),
+  mockReadFileFrom: vi.fn(),
+  mockTailLines: vi.fn(),
+  mockAwaitFileAppend: vi.fn(),
   mockSendNativeError: vi.fn(),
   mockGetInspectorData: vi.fn(),
   mockStabilize: vi.fn(),
+  mockStabilizeWithOptions: vi.fn(),
   mockIsScrollable: vi.fn(),
   mockScrollToCheckpoint: vi.fn(),
 }));
@@ -38,9 +55,16 @@ vi.mock('../specs/NativeSherloModule', () => ({
     getConstants: mockGetConstants,
     appendFile: mockAppendFile,
     readFile: mockReadFile,
+    appendText: mockAppendText,
+    readText: mockReadText,
+    flushFile: mockFlushFile,
+    readFileFrom: mockReadFileFrom,
+    tailLines: mockTailLines,
+    awaitFileAppend: mockAwaitFileAppend,
     sendNativeError: mockSendNativeError,
     getInspectorData: mockGetInspectorData,
     stabilize: mockStabilize,
+    stabilizeWithOptions: mockStabilizeWithOptions,
     isScrollable: mockIsScrollable,
     scrollToCheckpoint: mockScrollToCheckpoint,
     openStorybook: vi.fn(),
@@ -57,6 +81,7 @@ vi.mock('react-native', () => ({
 vi.mock('../helpers/isExpoGo', () => ({ default: false }));
 
 import SherloModule from '../SherloModule';
+import TurboModule from '../specs/NativeSherloModule';
 
 const NEW_ARCH_CONSTANTS = {
   mode: 'testing',
@@ -94,30 +119,195 @@ beforeEach(() => {
   vi.clearAllMocks();
 });
 
-describe('SherloModule live - appendFile base64 encoding', () => {
-  it('encodes the data with base64(utf8(content)) before calling native', async () => {
-    mockAppendFile.mockResolvedValue(undefined);
-    await SherloModule.appendFile('protocol.sherlo', 'hello world');
-    const expectedEncoded = base64.encode(utf8.encode('hello world'));
-    expect(mockAppendFile).toHaveBeenCalledWith('protocol.sherlo', expectedEncoded);
+describe('SherloModule live - appendFile / readFile text mode', () => {
+  it('passes the content to appendText unchanged', async () => {
+    mockAppendText.mockResolvedValue(undefined);
+    const content = '{"action":"START","ü":1}\n';
+    await SherloModule.appendFile('protocol.sherlo', content);
+    expect(mockAppendText).toHaveBeenCalledWith('protocol.sherlo', content);
+    expect(mockAppendFile).not.toHaveBeenCalled();
   });
 
-  it('encodes JSON content correctly (round-trips through base64)', async () => {
-    mockAppendFile.mockResolvedValue(undefined);
-    const content = '{"action":"START","timestamp":1234567890}';
-    await SherloModule.appendFile('protocol.sherlo', content);
-    const expectedEncoded = base64.encode(utf8.encode(content));
-    expect(mockAppendFile).toHaveBeenCalledWith('protocol.sherlo', expectedEncoded);
+  it('returns the readText result unchanged', async () => {
+    mockReadText.mockResolvedValue('hello world\n');
+    await expect(SherloModule.readFile('protocol.sherlo')).resolves.toBe('hello world\n');
+    expect(mockReadFile).not.toHaveBeenCalled();
+  });
+});
+
+describe('SherloModule live - flushFile', () => {
+  const native = TurboModule as any;
+
+  it('delegates to native flushFile', async () => {
+    mockFlushFile.mockResolvedValue(undefined);
+    await SherloModule.flushFile('log.sherlo');
+    expect(mockFlushFile).toHaveBeenCalledWith('log.sherlo');
+  });
+
+  it('resolves without native flushFile', async () => {
+    delete native.flushFile;
+    try {
+      await expect(SherloModule.flushFile('log.sherlo')).resolves.toBeUndefined();
+    } finally {
+      native.flushFile = mockFlushFile;
+    }
+  });
+});
+
+describe('SherloModule live - base64 fallback on native binaries without text mode', () => {
+  const native = TurboModule as any;
+
+  beforeEach(() => {
+    delete native.appendText;
+    delete native.readText;
+  });
+
+  afterEach(() => {
+    native.appendText = mockAppendText;
+    native.readText = mockReadText;
+  });
+
+  describe('appendFile base64 encoding', () => {
+    it('encodes the data with base64(utf8(content)) before calling native', async () => {
+      mockAppendFile.mockResolvedValue(undefined);
+      await SherloModule.appendFile('protocol.sherlo', 'hello world');
+      const expectedEncoded = base64.encode(utf8.encode('hello world'));
+      expect(mockAppendFile).toHaveBeenCalledWith('protocol.sherlo', expectedEncoded);
+    });
+
+    it('encodes JSON content correctly (round-trips through base64)', async () => {
+      mockAppendFile.mockResolvedValue(undefined);
+      const content = '{"action":"START","timestamp":1234567890}';
+      await SherloModule.appendFile('protocol.sherlo', content);
+      const expectedEncoded = base64.encode(utf8.encode(content));
+      expect(mockAppendFile).toHaveBeenCalledWith('protocol.sherlo', expectedEncoded);
+    });
+  });
+
+  describe('readFile base64 decoding', () => {
+    it('decodes the native return value with utf8.decode(base64.decode())', async () => {
+      const original = 'hello world\n';
+      const encoded = base64.encode(utf8.encode(original));
+      mockReadFile.mockResolvedValue(encoded);
+      const result = await SherloModule.readFile('protocol.sherlo');
+      expect(result).toBe(original);
+    });
+  });
+});
+
+describe('SherloModule live - readFileFrom / tailLines / awaitFileAppend', () => {
+  const PROTOCOL = '{"action":"START"}\n{"action":"ACK_START","ü":1}\npartial';
+
+  it('delegates to native when available', async () => {
+    mockReadFileFrom.mockResolvedValue({ content: 'a\n', cursor: 12 });
+    mockTailLines.mockResolvedValue({ content: 'b\n', cursor: 10 });
+
+    await expect(SherloModule.readFileFrom('protocol.sherlo', 10)).resolves.toEqual({
+      content: 'a\n',
+      cursor: 12,
+    });
+    await expect(SherloModule.tailLines('protocol.sherlo', 1)).resolves.toEqual({
+      content: 'b\n',
+      cursor: 10,
+    });
+    expect(mockReadFileFrom).toHaveBeenCalledWith('protocol.sherlo', 10);
+    expect(mockTailLines).toHaveBeenCalledWith('protocol.sherlo', 1);
+  });
+
+  it('awaitFileAppend() delegates to native when available', async () => {
+    mockAwaitFileAppend.mockResolvedValue({ content: 'c\n', cursor: 14 });
+
+    await expect(SherloModule.awaitFileAppend('protocol.sherlo', 12, 500)).resolves.toEqual({
+      content: 'c\n',
+      cursor: 14,
+    });
+    expect(mockAwaitFileAppend).toHaveBeenCalledWith('protocol.sherlo', 12, 500);
+  });
+
+  describe('on native binaries without the incremental API', () => {
+    const native = TurboModule as any;
+
+    beforeEach(() => {
+      delete native.readFileFrom;
+      delete native.tailLines;
+      delete native.awaitFileAppend;
+      mockReadFile.mockResolvedValue(base64.encode(utf8.encode(PROTOCOL)));
+    });
+
+    afterEach(() => {
+      native.readFileFrom = mockReadFileFrom;
+      native.tailLines = mockTailLines;
+      native.awaitFileAppend = mockAwaitFileAppend;
+    });
+
+    it('tailLines() returns the last complete lines and a byte cursor', async () => {
+      const chunk = await SherloModule.tailLines('protocol.sherlo', 1);
+      expect(chunk.content).toBe('{"action":"ACK_START","ü":1}\n');
+      expect(chunk.cursor).toBe(utf8.encode(PROTOCOL).lastIndexOf('\n') + 1);
+    });
+
+    it('readFileFrom() returns only the complete lines after the cursor', async () => {
+      const cursor = utf8.encode('{"action":"START"}\n').length;
+      const chunk = await SherloModule.readFileFrom('protocol.sherlo', cursor);
+      expect(chunk.content).toBe('{"action":"ACK_START","ü":1}\n');
+      expect(chunk.cursor).toBe(utf8.encode(PROTOCOL).lastIndexOf('\n') + 1);
+
+      await expect(SherloModule.readFileFrom('protocol.sherlo', chunk.cursor)).resolves.toEqual({
+        content: '',
+        cursor: chunk.cursor,
+      });
+    });
+
+    it('awaitFileAppend() returns appended lines without waiting', async () => {
+      const cursor = utf8.encode('{"action":"START"}\n').length;
+      const chunk = await SherloModule.awaitFileAppend('protocol.sherlo', cursor, 60_000);
+      expect(chunk.content).toBe('{"action":"ACK_START","ü":1}\n');
+    });
+
+    it('awaitFileAppend() resolves empty at the same cursor after the timeout', async () => {
+      const cursor = utf8.encode(PROTOCOL).lastIndexOf('\n') + 1;
+      await expect(SherloModule.awaitFileAppend('protocol.sherlo', cursor, 0)).resolves.toEqual({
+        content: '',
+        cursor,
+      });
+      expect(mockReadFile).toHaveBeenCalledTimes(2);
+    });
   });
 });
 
-describe('SherloModule live - readFile base64 decoding', () => {
-  it('decodes the native return value with utf8.decode(base64.decode())', async () => {
-    const original = 'hello world\n';
-    const encoded = base64.encode(utf8.encode(original));
-    mockReadFile.mockResolvedValue(encoded);
-    const result = await SherloModule.readFile('protocol.sherlo');
-    expect(result).toBe(original);
+describe('SherloModule live - stabilizeWithOptions', () => {
+  const OPTIONS = {
+    requiredMatches: 3,
+    minScreenshotsCount: 3,
+    intervalMs: 500,
+    timeoutMs: 5000,
+    saveScreenshots: false,
+    threshold: 0,
+    includeAA: true,
+    ignoreRegions: [{ testID: 'clock' }],
+  };
+
+  it('delegates to native when available', async () => {
+    mockStabilizeWithOptions.mockResolvedValue({ isStable: true });
+
+    await expect(SherloModule.stabilizeWithOptions(OPTIONS)).resolves.toEqual({ isStable: true });
+    expect(mockStabilizeWithOptions).toHaveBeenCalledWith(OPTIONS);
+    expect(mockStabilize).not.toHaveBeenCalled();
+  });
+
+  it('falls back to positional stabilize on native binaries without it', async () => {
+    const native = TurboModule as any;
+    delete native.stabilizeWithOptions;
+    mockStabilize.mockResolvedValue(false);
+
+    try {
+      await expect(SherloModule.stabilizeWithOptions(OPTIONS)).resolves.toEqual({
+        isStable: false,
+      });
+      expect(mockStabilize).toHaveBeenCalledWith(3, 3, 500, 5000, false, 0, true);
+    } finally {
+      native.stabilizeWithOptions = mockStabilizeWithOptions;
+    }
   });
 });
 
@@ -67,7 +67,7 @@ vi.mock('../SherloModule', () => ({
   default: {
     getConfig: mockGetConfig,
     getLastState: mockGetLastState,
-    stabilize: mockStabilize,
+    stabilizeWithOptions: mockStabilize,
     getInspectorData: mockGetInspectorData,
     isScrollable: mockIsScrollable,
     scrollToCheckpoint: mockScrollToCheckpoint,
@@ -149,7 +149,7 @@ beforeEach(() => {
   });
 
   mockGetLastState.mockReturnValue(makeLastState());
-  mockStabilize.mockResolvedValue(true);
+  mockStabilize.mockResolvedValue({ isStable: true });
   mockGetInspectorData.mockResolvedValue(FAKE_INSPECTOR_DATA);
   mockIsScrollable.mockResolvedValue({ scrollable: false });
   // With the readiness path now unconditional, useTestStory always runs the
@@ -214,6 +214,79 @@ describe('useTestStory protocol - basic REQUEST_SNAPSHOT flow', () => {
   });
 });
 
+describe('useTestStory protocol - stabilize options', () => {
+  it('passes the stabilization config without ignoreRegions by default', async () => {
+    mockSend.mockResolvedValue({
+      action: 'ACK_REQUEST_SNAPSHOT',
+      nextSnapshot: makeLastState().nextSnapshot,
+      requestId: 'req-next',
+    });
+
+    useTestStory({ metadataProviderRef: makeMetadataRef() });
+    await flushAll();
+
+    const options = mockStabilize.mock.calls[0][0];
+    expect(options).toMatchObject({ requiredMatches: 3, timeoutMs: 5000, saveScreenshots: true });
+    expect(options).not.toHaveProperty('ignoreRegions');
+  });
+
+  it('adds the story stabilizationIgnoreRegions as ignoreRegions', async () => {
+    const ignoreRegions = [{ testID: 'clock' }, { x: 0, y: 0, width: 100, height: 40 }];
+    const lastState = makeLastState();
+    mockGetLastState.mockReturnValue({
+      ...lastState,
+      nextSnapshot: {
+        ...lastState.nextSnapshot,
+        sherloParameters: { stabilizationIgnoreRegions: ignoreRegions },
+      },
+    });
+    mockSend.mockResolvedValue({
+      action: 'ACK_REQUEST_SNAPSHOT',
+      nextSnapshot: makeLastState().nextSnapshot,
+      requestId: 'req-next',
+    });
+
+    useTestStory({ metadataProviderRef: makeMetadataRef() });
+    await flushAll();
+
+    expect(mockStabilize).toHaveBeenCalledWith(expect.objectContaining({ ignoreRegions }));
+  });
+
+  it('forwards animatedRegions of an early unstable result to REQUEST_SNAPSHOT', async () => {
+    const animatedRegions = [{ x: 0, y: 0, width: 64, height: 32 }];
+    mockStabilize.mockResolvedValue({ isStable: false, animatedRegions });
+    mockSend.mockResolvedValue({
+      action: 'ACK_REQUEST_SNAPSHOT',
+      nextSnapshot: makeLastState().nextSnapshot,
+      requestId: 'req-next',
+    });
+
+    useTestStory({ metadataProviderRef: makeMetadataRef() });
+    await flushAll();
+
+    const call = mockSend.mock.calls[0][0];
+    expect(call.isStable).toBe(false);
+    expect(call.animatedRegions).toEqual(animatedRegions);
+  });
+
+  it('forwards cyclePeriod of an early unstable result to REQUEST_SNAPSHOT', async () => {
+    mockStabilize.mockResolvedValue({ isStable: false, cyclePeriod: 2 });
+    mockSend.mockResolvedValue({
+      action: 'ACK_REQUEST_SNAPSHOT',
+      nextSnapshot: makeLastState().nextSnapshot,
+      requestId: 'req-next',
+    });
+
+    useTestStory({ metadataProviderRef: makeMetadataRef() });
+    await flushAll();
+
+    const call = mockSend.mock.calls[0][0];
+    expect(call.isStable).toBe(false);
+    expect(call.cyclePeriod).toBe(2);
+    expect(call.animatedRegions).toBeUndefined();
+  });
+});
+
 describe('useTestStory protocol - ACK_SCROLL_REQUEST loop', () => {
   it('calls scrollToCheckpoint then sends a second REQUEST_SNAPSHOT with updated requestId', async () => {
     mockSend
@@ -60,7 +60,7 @@ vi.mock('../SherloModule', () => ({
   default: {
     getConfig: mockGetConfig,
     getLastState: mockGetLastState,
-    stabilize: mockStabilize,
+    stabilizeWithOptions: mockStabilize,
     getInspectorData: mockGetInspectorData,
     isScrollable: mockIsScrollable,
     scrollToCheckpoint: mockScrollToCheckpoint,
@@ -166,7 +166,7 @@ beforeEach(() => {
 
   mockGetConfig.mockReturnValue(READINESS_CONFIG);
   mockGetLastState.mockReturnValue(makeLastState());
-  mockStabilize.mockResolvedValue(true);
+  mockStabilize.mockResolvedValue({ isStable: true });
   mockGetInspectorData.mockResolvedValue(FAKE_INSPECTOR_DATA);
   mockIsScrollable.mockResolvedValue({ scrollable: false });
   mockAwaitFrameCommit.mockResolvedValue(true);
@@ -280,7 +280,7 @@ describe('useTestStory readiness - native paint barrier sequencing', () => {
     });
     mockStabilize.mockImplementation(async () => {
       capturedSurface = surface; // what the screenshot loop would see
-      return true;
+      return { isStable: true };
     });
 
     mockSend.mockResolvedValue({
@@ -1,12 +1,12 @@
 import { useEffect } from 'react';
 import { RunnerBridge } from '../../../../helpers';
-import SherloModule from '../../../../SherloModule';
+import SherloModule, { StabilizeOptions } from '../../../../SherloModule';
 import { useSafeAreaInsets } from 'react-native-safe-area-context';
 import { MetadataProviderRef } from '../MetadataProvider';
 import { prepareInspectorData } from './prepareInspectorData';
 import { readStoryError, clearStoryError } from '../../../storyErrorRegistry';
-import { Config } from '../../../../helpers/RunnerBridge/types';
-import { StorybookView } from '../../../../types';
+import { Config, StabilityRegion } from '../../../../helpers/RunnerBridge/types';
+import { SherloParameters, StorybookView } from '../../../../types';
 import { getStorybookChannel, waitForStoryRendered } from './storyRenderedReadiness';
 
 // Readiness defaults, applied SDK-side so an OLD runner that omits
@@ -39,6 +39,26 @@ function resolveReadinessConfig(config: Config): ReadinessConfig {
   };
 }
 
+/**
+ * Stability check parameters for a story: the runner's stabilization config plus
+ * the story's own sherlo parameters. Optional keys are only set when present.
+ */
+function getStabilizeOptions(
+  config: Config,
+  sherloParameters: SherloParameters | undefined
+): StabilizeOptions {
+  const options: StabilizeOptions = {
+    ...config.stabilization,
+    saveScreenshots: !!config.stabilization.saveScreenshots,
+  };
+
+  if (sherloParameters?.stabilizationIgnoreRegions?.length) {
+    options.ignoreRegions = sherloParameters.stabilizationIgnoreRegions;
+  }
+
+  return options;
+}
+
 /**
  * Run the native paint barrier (force a redraw, resolve on the next real frame
  * commit). Best-effort: on timeout/error we warn and proceed - the stability
@@ -153,20 +173,21 @@ function useTestStory({
           readiness,
         });
 
-        const isStable = await SherloModule.stabilize(
-          config.stabilization.requiredMatches,
-          config.stabilization.minScreenshotsCount,
-          config.stabilization.intervalMs,
-          config.stabilization.timeoutMs,
-          !!config.stabilization.saveScreenshots,
-          config.stabilization.threshold,
-          config.stabilization.includeAA
-        ).catch((error) => {
-          RunnerBridge.log('error checking if stable', { error: error.message });
-          throw error;
-        });
+        const stabilizeOptions = getStabilizeOptions(config, nextSnapshot.sherloParameters);
 
-        RunnerBridge.log('checked if stable', { isStable });
+        const { isStable, animatedRegions, cyclePeriod, diffPixels, diffRatio } =
+          await SherloModule.stabilizeWithOptions(stabilizeOptions).catch((error) => {
+            RunnerBridge.log('error checking if stable', { error: error.message });
+            throw error;
+          });
+
+        RunnerBridge.log('checked if stable', {
+          isStable,
+          animatedRegions,
+          cyclePeriod,
+          diffPixels,
+          diffRatio,
+        });
 
         let inspectorData;
         const inspectorDataStart = Date.now();
@@ -252,6 +273,8 @@ function useTestStory({
           hasError: containsError,
           inspectorData: JSON.stringify(finalInspectorData),
           isStable,
+          animatedRegions,
+          cyclePeriod,
           isScrollable,
           requestId: currentRequestId,
           safeAreaMetadata,
@@ -271,6 +294,8 @@ function useTestStory({
           }
 
           let isStableAfterScroll = true;
+          let animatedRegionsAfterScroll: StabilityRegion[] | undefined;
+          let cyclePeriodAfterScroll: number | undefined;
 
           if (scrollIndex > 0) {
             // Scroll to target
@@ -296,18 +321,14 @@ function useTestStory({
             }
 
             // Stabilize
-            isStableAfterScroll = await SherloModule.stabilize(
-              config.stabilization.requiredMatches,
-              config.stabilization.minScreenshotsCount,
-              config.stabilization.intervalMs,
-              config.stabilization.timeoutMs,
-              !!config.stabilization.saveScreenshots,
-              config.stabilization.threshold,
-              config.stabilization.includeAA
-            ).catch((error) => {
+            ({
+              isStable: isStableAfterScroll,
+              animatedRegions: animatedRegionsAfterScroll,
+              cyclePeriod: cyclePeriodAfterScroll,
+            } = await SherloModule.stabilizeWithOptions(stabilizeOptions).catch((error) => {
               RunnerBridge.log('error stabilizing after scroll', { error: error.message });
               throw error;
-            });
+            }));
 
             if (!isStableAfterScroll) {
               RunnerBridge.log('warning: UI not stable after scroll');
@@ -359,6 +380,8 @@ function useTestStory({
             hasError: containsError,
             inspectorData: JSON.stringify(finalInspectorData),
             isStable: isStableAfterScroll,
+            animatedRegions: animatedRegionsAfterScroll,
+            cyclePeriod: cyclePeriodAfterScroll,
             isScrollable,
             requestId: currentRequestId,
             safeAreaMetadata,
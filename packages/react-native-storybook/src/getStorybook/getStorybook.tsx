@@ -126,7 +126,10 @@ function getStorybook(view: StorybookView, params?: StorybookParams): () => Reac
         const storyId = cfg.inspect?.initialStoryId;
         if (!storyId) return;
         inspectLogReported.current = true;
-        SherloModule.appendFile(LOG_FILE, `INSPECT_STORY_OPENED:${storyId}\n`);
+        // Log lines are written in batches; write this one out before the runner looks for it
+        SherloModule.appendFile(LOG_FILE, `INSPECT_STORY_OPENED:${storyId}\n`).then(() =>
+          SherloModule.flushFile(LOG_FILE)
+        );
       } catch (_e) {}
     }, []);
 
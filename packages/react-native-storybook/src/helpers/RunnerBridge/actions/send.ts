@@ -2,9 +2,26 @@ import { getGlobalStates } from '../../../utils';
 import SherloModule from '../../../SherloModule';
 import { LogFn, SendFn, RunnerProtocolItem, AppProtocolItem, ProtocolItemMetadata } from '../types';
 
-const ACK_READ_INTERVAL = 500;
+// Upper bound for one wait on the runner's append. File events normally resolve
+// it much sooner; the timeout only bounds the cost of a missed event.
+const ACK_WAIT_TIMEOUT = 500;
 
 function send(path: string, log: LogFn): SendFn {
+  // Byte offset in the protocol file up to which lines were already read. Unset
+  // until the first read, which seeds it from the file tail instead of reading
+  // the whole file, so each read only transfers the lines appended since.
+  let cursor: number | undefined;
+
+  const readNewLines = async (): Promise<string[]> => {
+    const chunk =
+      cursor === undefined
+        ? await SherloModule.tailLines(path, 1)
+        : await SherloModule.awaitFileAppend(path, cursor, ACK_WAIT_TIMEOUT);
+
+    cursor = chunk.cursor;
+    return chunk.content.split('\n').filter((line) => line !== '');
+  };
+
   return async function (protocolItem): Promise<RunnerProtocolItem> {
     const content: AppProtocolItem & ProtocolItemMetadata = {
       ...protocolItem,
@@ -19,9 +36,15 @@ function send(path: string, log: LogFn): SendFn {
     await SherloModule.appendFile(path, `${contentString}\n`);
 
     return new Promise<RunnerProtocolItem>((resolve) => {
-      let ackReadInterval: ReturnType<typeof setInterval>;
+      let isResolved = false;
       let responseItem: RunnerProtocolItem | undefined;
 
+      const resolveOnce = (item: RunnerProtocolItem): void => {
+        if (isResolved) return;
+        isResolved = true;
+        resolve(item);
+      };
+
       const resolveForTestMode = async (
         ms: number,
         mockedResponseItem: RunnerProtocolItem
@@ -30,56 +53,60 @@ function send(path: string, log: LogFn): SendFn {
 
         if (shouldFakeRunner) {
           await new Promise<void>((r) => setTimeout(() => r(), ms));
-          clearInterval(ackReadInterval);
-          resolve(mockedResponseItem);
+          resolveOnce(mockedResponseItem);
         }
       };
 
-      ackReadInterval = setInterval(async () => {
-        try {
-          const response = await SherloModule.readFile(path);
-          if (response) {
-            const responseLines = response.split('\n');
-            const lastLine = responseLines[responseLines.length - 2];
-
-            responseItem = JSON.parse(lastLine) as RunnerProtocolItem;
-
-            let hasAck = false;
-            switch (protocolItem.action) {
-              case 'START':
-                hasAck = responseItem.action === 'ACK_START';
-
-                const storyIndex = protocolItem.snapshots.findIndex(
-                  (snapshot) => snapshot.storyId === getGlobalStates().testStoryId
-                );
-
-                await resolveForTestMode(1000, {
-                  action: 'ACK_START',
-                  requestId: 'fake-request-id',
-                  nextSnapshot: protocolItem.snapshots[storyIndex],
-                });
-                break;
-
-              case 'REQUEST_SNAPSHOT':
-                hasAck =
-                  responseItem.action === 'ACK_REQUEST_SNAPSHOT' ||
-                  responseItem.action === 'ACK_SCROLL_REQUEST';
-                break;
-
-              default:
-                throw new Error('Unknown action');
-            }
-
-            if (hasAck) {
-              log('received ack message', { responseItem });
-              clearInterval(ackReadInterval);
-              resolve(responseItem);
+      // Reads are sequential, each one waits for the runner's next append
+      // instead of polling on a fixed interval, so an ACK lands as soon as it
+      // is written.
+      (async () => {
+        while (!isResolved) {
+          try {
+            const newLines = await readNewLines();
+            if (newLines.length > 0) {
+              const lastLine = newLines[newLines.length - 1];
+
+              responseItem = JSON.parse(lastLine) as RunnerProtocolItem;
+
+              let hasAck = false;
+              switch (protocolItem.action) {
+                case 'START':
+                  hasAck = responseItem.action === 'ACK_START';
+
+                  const storyIndex = protocolItem.snapshots.findIndex(
+                    (snapshot) => snapshot.storyId === getGlobalStates().testStoryId
+                  );
+
+                  await resolveForTestMode(1000, {
+                    action: 'ACK_START',
+                    requestId: 'fake-request-id',
+                    nextSnapshot: protocolItem.snapshots[storyIndex],
+                  });
+                  break;
+
+                case 'REQUEST_SNAPSHOT':
+                  hasAck =
+                    responseItem.action === 'ACK_REQUEST_SNAPSHOT' ||
+                    responseItem.action === 'ACK_SCROLL_REQUEST';
+                  break;
+
+                default:
+                  throw new Error('Unknown action');
+              }
+
+              if (hasAck) {
+                log('received ack message', { responseItem });
+                resolveOnce(responseItem);
+              }
             }
+          } catch (error) {
+            log('await ack message error', { error });
+            // Back off so a persistent read error doesn't spin the loop
+            await new Promise<void>((r) => setTimeout(() => r(), ACK_WAIT_TIMEOUT));
           }
-        } catch (error) {
-          log('await ack message error', { error });
         }
-      }, ACK_READ_INTERVAL);
+      })();
     });
   };
 }
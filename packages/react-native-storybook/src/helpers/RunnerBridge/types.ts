@@ -16,6 +16,56 @@ export type Config = {
     threshold: number;
     includeAA: boolean;
     saveScreenshots?: boolean;
+    /**
+     * Consecutive screenshots still count as matching with up to this many differing pixels
+     * (e.g. dithering or sub-pixel text rendering). Default 0.
+     */
+    maxDiffPixels?: number;
+    /**
+     * Same as maxDiffPixels, as a share of the screenshot (0 to 1); the larger of the two
+     * applies. Default 0.
+     */
+    maxDiffRatio?: number;
+    /**
+     * Compare screenshots downscaled by this factor per axis (1, 2 or 4) while counting
+     * consecutive matches; the match that ends the check is confirmed at full resolution.
+     * Cuts the cost of every comparison by the factor squared. Default 1.
+     */
+    downscale?: 1 | 2 | 4;
+    /**
+     * How consecutive screenshots are compared (Android):
+     * - 'pixelmatch': color distance per pixel with anti-aliasing detection (default)
+     * - 'exact': any change in a row counts, from row hashes only; fastest, ignores threshold
+     * - 'ssim': structural similarity of 8x8 windows, a window counts when its SSIM is below
+     *   1 - threshold; tolerant of noise and dithering
+     */
+    comparator?: 'pixelmatch' | 'exact' | 'ssim';
+    /**
+     * Stop early, instead of waiting for the timeout, when the rest of the screen is stable
+     * and only a small area keeps animating (e.g. an unmasked spinner). The result is still
+     * not stable, with the animated areas reported as animatedRegions. Default false.
+     */
+    detectAnimatedRegions?: boolean;
+    /**
+     * Largest share of the screen (0 to 1) that may keep animating for detectAnimatedRegions
+     * to stop early. Default 0.1.
+     */
+    maxAnimatedAreaRatio?: number;
+    /**
+     * Stop early, instead of waiting for the timeout, when the screen loops through the
+     * same few frames (e.g. a blinking caret or a pulsing badge), preferably on the same
+     * frame of the loop every run. The result is still not stable, with the loop length in
+     * captures reported as cyclePeriod. Default false.
+     */
+    detectCycles?: boolean;
+    /**
+     * When screenshots are taken (Android):
+     * - 'interval': every intervalMs, each after forcing a redraw (default)
+     * - 'frameCommit': right after the app draws a frame; when it draws none for a few
+     *   vsyncs, that counts as a match without a screenshot, so settled screens finish in
+     *   a fraction of a second. Needs Android 10 (API 29), falls back to 'interval' below
+     */
+    captureMode?: 'interval' | 'frameCommit';
   };
   easUpdateDeeplink?: string;
   initialStoryRenderDelayMs?: number;
@@ -60,6 +110,8 @@ export type Config = {
   };
 };
 
+export type StabilityRegion = { x: number; y: number; width: number; height: number };
+
 export type LastState = {
   nextSnapshot: Snapshot;
   requestId: string;
@@ -112,6 +164,16 @@ export type AppProtocolItem =
       hasError?: boolean;
       inspectorData?: string;
       isStable?: boolean;
+      /**
+       * Areas that kept animating while the rest of the screen was stable, when the
+       * stability check stopped early because of them (see detectAnimatedRegions).
+       */
+      animatedRegions?: StabilityRegion[];
+      /**
+       * Length in captures of the looping animation the stability check stopped early on
+       * (see detectCycles).
+       */
+      cyclePeriod?: number;
       requestId: string;
       hasNetworkImage?: boolean;
       isScrollable?: boolean;
@@ -5,8 +5,44 @@ export interface Spec extends TurboModule {
   getInspectorData: () => Promise<string>;
   sendNativeError: (errorCode: string, message: string, dataJson: string) => void;
   reportEarlyJsError: (name: string, message: string, stack: string) => boolean;
+  /** Appends base64-encoded bytes. Prefer appendText for text content. */
   appendFile: (path: string, content: string) => Promise<void>;
+  /** Resolves with the file content base64-encoded. Prefer readText for text content. */
   readFile: (path: string) => Promise<string>;
+  /**
+   * Appends UTF-8 text as-is, skipping the base64 round trip of appendFile.
+   * Optional: native binaries that predate it fall back to appendFile in JS.
+   */
+  appendText?: (path: string, content: string) => Promise<void>;
+  /** Resolves with the file content as UTF-8 text. Optional, see appendText. */
+  readText?: (path: string) => Promise<string>;
+  /**
+   * Resolves once the appends queued so far are written. Android writes log lines
+   * in batches, so call it after the ones the runner waits for.
+   * Optional: native binaries without it write every append before resolving.
+   */
+  flushFile?: (path: string) => Promise<void>;
+  /**
+   * Reads the complete lines appended to the file after byte offset `cursor`
+   * and resolves with them as UTF-8 text plus the cursor for the next call.
+   * Optional: native binaries that predate it fall back to readFile in JS.
+   */
+  readFileFrom?: (path: string, cursor: number) => Promise<{ content: string; cursor: number }>;
+  /**
+   * Reads up to the last `lineCount` complete lines of the file and resolves
+   * with them plus the cursor right after the last one. Optional, see readFileFrom.
+   */
+  tailLines?: (path: string, lineCount: number) => Promise<{ content: string; cursor: number }>;
+  /**
+   * Resolves as soon as complete lines are appended to the file after `cursor`
+   * (file system events, no polling), or with empty content after `timeoutMs`.
+   * Optional, see readFileFrom.
+   */
+  awaitFileAppend?: (
+    path: string,
+    cursor: number,
+    timeoutMs: number
+  ) => Promise<{ content: string; cursor: number }>;
   openStorybook: () => void;
   closeStorybook: () => void;
   toggleStorybook: () => void;
@@ -19,6 +55,18 @@ export interface Spec extends TurboModule {
     threshold: number,
     includeAA: boolean
   ) => Promise<boolean>;
+  /**
+   * Same as stabilize with the parameters passed as one object, so optional ones
+   * (e.g. ignoreRegions) can be added without changing the signature.
+   * Optional: native binaries that predate it fall back to stabilize in JS.
+   */
+  stabilizeWithOptions?: (options: Object) => Promise<{
+    isStable: boolean;
+    animatedRegions?: Array<{ x: number; y: number; width: number; height: number }>;
+    cyclePeriod?: number;
+    diffPixels?: number;
+    diffRatio?: number;
+  }>;
   isScrollable: () => Promise<{
     scrollable: boolean;
     scrollViewFrame?: { x: number; y: number; width: number; height: number };
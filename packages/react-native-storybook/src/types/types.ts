@@ -28,8 +28,22 @@ export interface SherloParameters {
    * platforms specified in sherlo.config.json.
    */
   platform?: 'ios' | 'android';
+
+  /**
+   * Areas of the screen to leave out when waiting for the story to stabilize, e.g. a
+   * live clock, a looping spinner or a shimmer placeholder that never stops changing.
+   * Each entry is either a rectangle in screenshot pixels or a view referenced by its
+   * testID or nativeID. Only affects the stability check (currently on Android), not
+   * the snapshot itself.
+   */
+  stabilizationIgnoreRegions?: StabilizationIgnoreRegion[];
 }
 
+export type StabilizationIgnoreRegion =
+  | { x: number; y: number; width: number; height: number }
+  | { testID: string }
+  | { nativeID: string };
+
 export type StoryId = `${string}--${string}`;
 
 export type Snapshot = {